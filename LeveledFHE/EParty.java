@@ -1,6 +1,6 @@
 import java.math.BigInteger;
-import java.security.SecureRandom;
 import java.util.Arrays;
+import java.util.Random;
 
 public class EParty {
     private int n, m, chi;
@@ -8,12 +8,28 @@ public class EParty {
     private BigInteger[] secretKey;
     private BigInteger[][] publicKey;
     private BigInteger[] sprime;
-    private double nextGaussian;
-    private boolean hasNextGaussian = false;
+    private final RandomnessProvider randomness;
+    private final DiscreteGaussianSampler gaussian;
 
     public EParty(int lambda, int mu, int chi) {
-        SecureRandom rand = new SecureRandom();
-        q = BigInteger.probablePrime(mu, rand).abs();
+        this(lambda, mu, chi, RandomnessProvider.getDefault());
+    }
+
+    public EParty(int lambda, int mu, int chi, RandomnessProvider randomness) {
+        this(lambda, BigInteger.probablePrime(mu, randomness.current()).abs(), chi, randomness);
+    }
+
+    /**
+     * Constructs an EParty with a given modulus, e.g. the modulus q_j of a level of an RnsBasis.
+     * @param lambda the security parameter.
+     * @param q the modulus.
+     * @param chi defines the error distribution.
+     * @param randomness the source of all randomness of the party.
+     */
+    public EParty(int lambda, BigInteger q, int chi, RandomnessProvider randomness) {
+        this.randomness = randomness;
+        this.gaussian = DiscreteGaussianSampler.forWidth(chi);
+        this.q = q;
         this.n = (lambda * log((int) Math.floor(q.doubleValue() / log(chi))));
         this.chi = chi;
         m = (2 * n + 1) * q.bitLength();
@@ -31,23 +47,24 @@ public class EParty {
         System.out.println("Hopefully "+w+": " + p.decrypt(c));
     }
 
-    private int getM() {
+    /**
+     * Simple getter method for the number of rows of the public key.
+     * @return Returns m = (2n + 1) · log(q).
+     */
+    public int getM() {
         return m;
     }
 
     public void secretKeyGen() {
-        SecureRandom rand = new SecureRandom();
         secretKey[0] = BigInteger.ONE;
         for (int i = 1; i <= n; i++) {
-            do {
-                secretKey[i] = new BigInteger(q.bitLength(), rand);
-            } while (secretKey[i].compareTo(q) >= 0);
+            secretKey[i] = randomness.nextMod(q);
             sprime[i - 1] = secretKey[i];
         }
     }
 
      public BigInteger[][] publicKeyGen(int m, int n) {
-        SecureRandom rand = new SecureRandom();
+        Random rand = randomness.current();
         BigInteger[][] A = new BigInteger[m][n];
         for (int i = 0; i < m; i++) {
             for (int j = 0; j < n; j++) {
@@ -56,21 +73,13 @@ public class EParty {
                 A[i][j] = new BigInteger(bytes).mod(q);
             }
         }
-        BigInteger[] e = new BigInteger[m];
-        for (int i = 0; i < m; i++){
-            if (hasNextGaussian){
-                e[i] = BigInteger.valueOf(Math.round(nextGaussian));
-                hasNextGaussian = false;
-            } else {
-                e[i] = BigInteger.valueOf(Math.round(getGaussian(0, chi)));
-            }
-        }
-        BigInteger[] b = vecAdd(matrixMultVec(A, sprime), constMultVector(BigInteger.TWO,e, q));
+        BigInteger[] e = sampleErrors(m);
+        BigInteger[] b = vecAdd(ModLinearAlgebra.matrixVector(A, sprime, q), constMultVector(BigInteger.TWO,e, q));
         return constructX(b, A);
     }
 
     public BigInteger[][] publicKeyGen(BigInteger[] s, int m) {
-        SecureRandom rand = new SecureRandom();
+        Random rand = randomness.current();
         BigInteger[] sprime = new BigInteger[s.length - 1];
         System.arraycopy(s, 1, sprime, 0, s.length - 1);
         BigInteger[][] A = new BigInteger[m][s.length - 1];
@@ -81,16 +90,8 @@ public class EParty {
                 A[i][j] = new BigInteger(bytes).mod(q);
             }
         }
-        BigInteger[] e = new BigInteger[m];
-        for (int i = 0; i < m; i++){
-            if (hasNextGaussian){
-                e[i] = BigInteger.valueOf(Math.round(nextGaussian));
-                hasNextGaussian = false;
-            } else {
-                e[i] = BigInteger.valueOf(Math.round(getGaussian(0, chi)));
-            }
-        }
-        BigInteger[] b = vecAdd(matrixMultVec(A, sprime), constMultVector(BigInteger.TWO,e, q));
+        BigInteger[] e = sampleErrors(m);
+        BigInteger[] b = vecAdd(ModLinearAlgebra.matrixVector(A, sprime, q), constMultVector(BigInteger.TWO,e, q));
         return constructX(b, A);
     }
 
@@ -103,15 +104,48 @@ public class EParty {
         wVec[0] = BigInteger.valueOf(w);
 
         BigInteger[] r = allZeroVec(m);
-        SecureRandom rand = new SecureRandom();
+        long[] bits = new long[(m + 63) >>> 6];
+        randomness.fillBits(bits, m);
         for (int i = 0; i < m; i++){
-            r[i] = BigInteger.valueOf(rand.nextInt(2));
+            r[i] = BigInteger.valueOf((bits[i >>> 6] >>> i) & 1);
+        }
+        return vecAdd(wVec, ModLinearAlgebra.vectorMatrix(r, publicKey, q));
+    }
+
+    /**
+     * Encrypts every bit of a message in one pass over the public key.
+     * The random 0/1-vectors r of all the bits are drawn at once, and the products r^T · X are computed together as one
+     * matrix product, see 'ModLinearAlgebra.selectedRowSums'.
+     * Bit l of the message is bit (l mod 8) of message[l / 8], counting from the least significant bit.
+     * @param message the bits to be encrypted, packed into bytes.
+     * @return Returns a ciphertext per bit of the message.
+     */
+    public BigInteger[][] encryptBits(byte[] message){
+        int rows = publicKey.length;
+        long[][] selections = new long[message.length * 8][(rows + 63) >>> 6];
+        for (long[] selection : selections){
+            randomness.fillBits(selection, rows);
+        }
+        BigInteger[][] c = ModLinearAlgebra.selectedRowSums(selections, publicKey, q);
+        for (int l = 0; l < c.length; l++){
+            if (((message[l >>> 3] >>> (l & 7)) & 1) != 0){
+                c[l][0] = c[l][0].add(BigInteger.ONE).mod(q);
+            }
         }
-        return vecAdd(wVec, matrixMultVec(transpose(publicKey), r));
+        return c;
     }
 
+    /**
+     * Decrypts with the noise taken in (-q/2, q/2], such that a negative noise does not flip the parity of the result.
+     * @param c the ciphertext.
+     * @return Returns the bit encrypted.
+     */
     public int decrypt(BigInteger[] c){
-        return dotProduct(c,secretKey).mod(BigInteger.TWO).intValue();
+        BigInteger noisy = dotProduct(c,secretKey);
+        if (noisy.shiftLeft(1).compareTo(q) > 0){
+            noisy = noisy.subtract(q);
+        }
+        return noisy.mod(BigInteger.TWO).intValue();
     }
 
     public void updateModulus(BigInteger q) {
@@ -119,30 +153,34 @@ public class EParty {
     }
 
     /**
-     * Gaussian sampling based on Box–Muller transform.
+     * Gaussian sampling based on the Box–Muller transform of the thread's own generator, see 'RandomnessProvider.current'.
+     * No sample is cached in the EParty, so several threads may sample at once.
      * @param mean the mean of the distribution.
      * @param variance the variance of the distribution.
      * @return returns a sample from a Gaussian distribution.
      */
     public double getGaussian(int mean, int variance) {
-        if (hasNextGaussian) {
-            hasNextGaussian = false;
-            return nextGaussian;
-        } else {
-            SecureRandom rand = new SecureRandom();
-            double U1 = rand.nextDouble();
-            double U2 = rand.nextDouble();
-            double Z1 = Math.sqrt(-2 * Math.log(U1)) * Math.cos(2 * Math.PI * U2);
-            double Z2 = Math.sqrt(-2 * Math.log(U1)) * Math.sin(2 * Math.PI * U2);
-            nextGaussian = Z2 * variance + mean;
-            hasNextGaussian = true;
-            return Z1 * variance + mean;
+        return randomness.current().nextGaussian() * variance + mean;
+    }
+
+    /**
+     * Samples an error vector from the discrete Gaussian distribution of width chi, see 'DiscreteGaussianSampler'.
+     * @param m the dimension of the vector.
+     * @return Returns the errors.
+     */
+    private BigInteger[] sampleErrors(int m) {
+        long[] samples = new long[m];
+        gaussian.fill(samples, 0, m, randomness.current());
+        BigInteger[] e = new BigInteger[m];
+        for (int i = 0; i < m; i++){
+            e[i] = BigInteger.valueOf(samples[i]);
         }
+        return e;
     }
 
     private int getBinomial(int k) {
         int sum = 0;
-        SecureRandom rand = new SecureRandom();
+        Random rand = randomness.current();
         for (int i = 0; i < k - 1; i++) {
             int b_0 = rand.nextInt(2);
             int b_1 = rand.nextInt(2);
@@ -152,16 +190,12 @@ public class EParty {
     }
 
     public BigInteger[] tensorVecSelf(){
-        int elementsToBeStored = ((n+1)*(n))/2;
+        int elementsToBeStored = n + ((n+1)*(n))/2;
         BigInteger[] sTensorS = new BigInteger[elementsToBeStored];
         if (n >= 0) System.arraycopy(secretKey, 1, sTensorS, 0, n);
         int offset;
-        for (int i = 1; i < n; i++){
-            if (i == 1){
-                offset = n;
-            } else {
-                offset = (n * i - (i * (i - 1)) / 2);
-            }
+        for (int i = 1; i <= n; i++){
+            offset = n + (i - 1) * (n + 1) - ((i - 1) * i) / 2;
             for (int j = i; j < n + 1; j++){
                 sTensorS[(offset + (j - i))] = secretKey[i].multiply(secretKey[j]).mod(q);
             }
@@ -201,16 +235,6 @@ public class EParty {
         return X;
     }
 
-    private BigInteger[] matrixMultVec(BigInteger[][] A, BigInteger[] s){
-        BigInteger[] As = allZeroVec(A.length);
-        for (int i = 0; i < A.length; i++) {
-            for (int j = 0; j < A[0].length; j++) {
-                As[i] = As[i].add(A[i][j].multiply(s[j])).mod(q);
-            }
-        }
-        return As;
-    }
-
     private BigInteger[][] matrixSub(BigInteger[][] M, BigInteger[][] A){
         BigInteger[][] MSubA = new BigInteger[A.length][A[0].length];
         for (int i = 0; i < A.length; i++){
@@ -221,16 +245,6 @@ public class EParty {
         return MSubA;
     }
 
-    private BigInteger[][] transpose(BigInteger[][] M){
-        BigInteger[][] MT = new BigInteger[M[0].length][M.length];
-        for (int i = 0; i < M[0].length; i++){
-            for (int j = 0; j < M.length; j++){
-                MT[i][j] = M[j][i];
-            }
-        }
-        return MT;
-    }
-
     private BigInteger dotProduct(BigInteger[] c, BigInteger[] s) {
         BigInteger sum = BigInteger.ZERO;
         for (int i = 0; i < c.length; i++) {
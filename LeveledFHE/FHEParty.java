@@ -1,226 +1,388 @@
 import java.math.BigInteger;
-import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
+/**
+ * A party of the leveled BGV scheme, with one EParty per level j = 0, ..., L.
+ * Ciphertexts are RnsVectors - a ciphertext at level j holds n_j + 1 numbers modulo q_j - and stay in RNS through
+ * addition, multiplication and refreshing; they are only converted to and from BigIntegers by 'encrypt' and 'decrypt'.
+ * Every key-switching matrix τ_j has a row per bit of every entry of a refreshed ciphertext, so it has
+ * (1 + n_j + n_j(n_j + 1)/2) · log(q_j) · log(q_(j - 1)) rows of n_(j - 1) + 1 entries - it only fits in memory for
+ * small lambda and L, e.g. lambda = 1 with L ≤ 2 or lambda = 2 with L = 1.
+ */
 public class FHEParty {
+    /**
+     * The smallest bit length of the primes of the modulus chain, such that the noise added by key switching - about
+     * 2σ · sqrt(rows of τ_j / 2) - stays well below q_0 / 2 and a refreshed ciphertext decrypts correctly.
+     */
+    private static final int MIN_PRIME_BITS = 18;
 
     private int L;
     private EParty[] parties;
-    private BigInteger[][][] publicKey;
+    private RnsBasis basis;
+    private final RandomnessProvider randomness;
+    private final DiscreteGaussianSampler gaussian;
+    /**
+     * The key-switching matrices τ_j from level j to level j - 1 in RNS at level j - 1, stored row after row.
+     */
+    private RnsVector[] switchKeys;
 
     public FHEParty(int lambda, int chi, int L){
-        this.parties = new EParty[L + 1];
+        this(lambda, chi, L, RandomnessProvider.getDefault());
+    }
+
+    /**
+     * Constructs an FHEParty whose modulus chain q_0 < ... < q_L is an RnsBasis - q_j is the product of j + 1 word-size
+     * primes of about mu = log(lambda) + log(L) bits each, but at least 'MIN_PRIME_BITS', so q_j has about (j + 1) · mu bits.
+     * @param lambda the security parameter.
+     * @param chi defines the error distribution.
+     * @param L the number of levels - must be positive.
+     * @param randomness the source of all randomness of the party.
+     */
+    public FHEParty(int lambda, int chi, int L, RandomnessProvider randomness){
+        if (L < 1){
+            throw new IllegalArgumentException("Invalid number of levels - there must be at least one level to refresh to.");
+        }
         int mu = log(lambda) + log(L);
+        this.basis = RnsBasis.generate(L, Math.min(RnsBasis.MAX_PRIME_BITS, Math.max(MIN_PRIME_BITS, mu)), randomness.current());
+        this.parties = new EParty[L + 1];
         for (int j = L; j >= 0; j--){
-            parties[j] = new EParty(lambda, (j + 1) * mu, chi);
+            parties[j] = new EParty(lambda, basis.getModulus(j), chi, randomness);
         }
         this.L = L;
+        this.randomness = randomness;
+        this.gaussian = DiscreteGaussianSampler.forWidth(chi);
     }
 
+    /**
+     * Generates the keys of every level with one worker per available processor, see 'keyGen(int)'.
+     */
     public void keyGen(){
-        BigInteger[][] sjprime = new BigInteger[L + 1][];
-        BigInteger[][][] sjprimeprime = new BigInteger[L + 1][][];
-        BigInteger[][][] tau = new BigInteger[L][][];
-        for (int j = L; j >= 0; j--){
-            BigInteger qj = parties[j].getQ();
-            int nj = parties[j].getN();
-            parties[j].secretKeyGen();
-            parties[j].setPublicKey(parties[j].publicKeyGen((2 * nj + 1)*qj.bitLength(), nj));
-            sjprime[j] = parties[j].tensorVecSelf();
-            sjprimeprime[j] = bitDecompVector(sjprime[j], qj);
-        }
-        for (int j = L-1; j > 0; j--) {
-            tau[j] = switchKeyGen(sjprimeprime[j], parties[j], parties[j - 1], parties[j].getQ());
-        }
-        publicKey = tau;
+        keyGen(Runtime.getRuntime().availableProcessors());
     }
 
-    public BigInteger[] encrypt(int w){
-        BigInteger[] c = new BigInteger[parties[L].getN() + 2];
-        for (int i = 0; i < parties[L].getN() + 1; i++){
-            c[i] = parties[L].encrypt(w)[i];
+    /**
+     * Generates the keys of every level as a task graph run by a pool of workers.
+     * The secret key of a level, and then its public key and BitDecomp(1, s ⊗ s), do not depend on any other level,
+     * so the levels are generated concurrently. The key-switching matrix τ_j is generated as soon as BitDecomp(1, s ⊗ s)
+     * of level j and the secret key of level j - 1 are ready.
+     * @param workers the number of threads generating keys.
+     */
+    public void keyGen(int workers){
+        if (workers < 1){
+            throw new IllegalArgumentException("At least one worker is needed.");
         }
-        c[parties[L].getN() + 1] = BigInteger.valueOf(L);
-        return c;
-    }
-
-    public int decrypt(BigInteger[] c){
-        int level = c[c.length - 1].intValue();
-        BigInteger[] cMinusLevel = new BigInteger[c.length - 1];
-        System.arraycopy(c, 0, cMinusLevel, 0, c.length - 1);
-
-        return parties[level].decrypt(cMinusLevel);
-    }
-
-    public BigInteger[] addCiphers(BigInteger[] c1, BigInteger[] c2){
-        while (!(c1[c1.length - 1].intValue() == c2[c2.length - 1].intValue())){
-            if (c1[c1.length - 1].intValue() < c2[c2.length - 1].intValue()){
-                refresh(c2);
-            }else {
-                refresh(c1);
+        ExecutorService executor = Executors.newFixedThreadPool(workers, runnable -> {
+            Thread thread = new Thread(runnable, "fhe-key-generation");
+            thread.setDaemon(true);
+            return thread;
+        });
+        RnsVector[] tau = new RnsVector[L + 1];
+        try {
+            List<CompletableFuture<Void>> secretKeys = new ArrayList<>();
+            List<CompletableFuture<?>> tasks = new ArrayList<>();
+            for (int j = 0; j <= L; j++){
+                EParty party = parties[j];
+                CompletableFuture<Void> secretKey = CompletableFuture.runAsync(party::secretKeyGen, executor);
+                secretKeys.add(secretKey);
+                tasks.add(secretKey.thenRunAsync(() -> publicKeyGen(party), executor));
             }
-        }
-        BigInteger[] c3 = vecAdd(c1, c2, parties[c1.length - 1].getQ());
-        return refresh(c3);
-    }
-
-    public BigInteger[] multCiphers(BigInteger[] c1, BigInteger[] c2){
-        while (!(c1[c1.length - 1].intValue() == c2[c2.length - 1].intValue())){
-            if (c1[c1.length - 1].intValue() < c2[c2.length - 1].intValue()){
-                refresh(c2);
-            }else {
-                refresh(c1);
+            for (int j = L; j > 0; j--){
+                int level = j;
+                CompletableFuture<BigInteger[]> sjprimeprime = secretKeys.get(j)
+                        .thenApplyAsync(ignored -> bitDecomp(tensorWithOne(parties[level]), parties[level].getQ()), executor);
+                tasks.add(sjprimeprime.thenCombineAsync(secretKeys.get(j - 1), (sjpp, ignored) -> {
+                    tau[level] = switchKeyGen(sjpp, parties[level - 1], level - 1);
+                    return null;
+                }, executor));
             }
+            CompletableFuture.allOf(tasks.toArray(new CompletableFuture<?>[0])).join();
+        } catch (CompletionException e){
+            if (e.getCause() instanceof RuntimeException){
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error){
+                throw (Error) e.getCause();
+            }
+            throw e;
+        } finally {
+            executor.shutdown();
         }
-        int level = c1[c1.length - 1].intValue();
-        BigInteger[] c3 = vecMult(c1, c2, parties[level].getQ());
-        return refresh(c3);
+        switchKeys = tau;
     }
 
-    public BigInteger[] refresh(BigInteger[] c){
-        int level = c[c.length - 1].intValue();
-        BigInteger[] c1 = powersOf2(c, parties[level].getQ());
-        BigInteger[] c2 = scale(c1, parties[level].getQ(), parties[level - 1].getQ(), BigInteger.TWO);
-        return switchKey(publicKey[level - 1], c2, parties[level - 1].getQ());
+    /**
+     * The public key of a level, which only depends on its secret key.
+     * @param party the party of the level, whose secret key has been generated.
+     */
+    private void publicKeyGen(EParty party){
+        int nj = party.getN();
+        party.setPublicKey(party.publicKeyGen((2 * nj + 1) * party.getQ().bitLength(), nj));
     }
 
-    private BigInteger[] scale(BigInteger[] c, BigInteger q, BigInteger p, BigInteger r) {
-        BigInteger pDivQ = p.divide(q);
-        BigInteger[] cMod = new BigInteger[c.length];
-        for (int i = 0; i < c.length; i++){
-            cMod[i] = c[i].mod(pDivQ);
-        }
-        BigInteger[] res = vecSub(c,cMod,pDivQ);
-        for (int i = 0; i < c.length; i++){
-            res[i] = res[i].remainder(p);
-        }
-        if (res[c.length / 2].mod(r).equals(c[c.length / 2].mod(r))){
-            return res;
-        } else {
-            throw new ArithmeticException("Correctness wasn't preserved. " + res[c.length / 2].mod(r) +"  should be equal  "+ c[c.length / 2].mod(r));
-        }
+    public RnsVector encrypt(int w){
+        return basis.toRns(parties[L].encrypt(w), L);
     }
 
-
-    private BigInteger[][] bitDecompVector(BigInteger[] x, BigInteger q) {
-        BigInteger[][] xDecomp = new BigInteger[x.length][q.bitLength()];
-        for (int i = 0; i < x.length; i++) {
-            xDecomp[i] = bitDecompElement(x[i], q);
+    /**
+     * Encrypts every bit of a message at level L with one matrix product over the public key, see 'EParty.encryptBits'.
+     * Bit l of the message is bit (l mod 8) of message[l / 8], counting from the least significant bit.
+     * @param message the bits to be encrypted, packed into bytes.
+     * @return Returns a ciphertext per bit of the message, at level L.
+     */
+    public RnsVector[] encryptBits(byte[] message){
+        BigInteger[][] c = parties[L].encryptBits(message);
+        RnsVector[] ciphertexts = new RnsVector[c.length];
+        for (int l = 0; l < c.length; l++){
+            ciphertexts[l] = basis.toRns(c[l], L);
         }
-        return xDecomp;
+        return ciphertexts;
     }
 
-    private BigInteger[] bitDecompElement(BigInteger x, BigInteger q) {
-        BigInteger[] xDecomp = new BigInteger[q.bitLength()];
-        for (int i = 0; i < q.bitLength(); i++) {
-            xDecomp[i] = x.mod(BigInteger.TWO);
-            x = x.divide(BigInteger.TWO);
-        }
-        return xDecomp;
+    public int decrypt(RnsVector c){
+        return parties[c.getLevel()].decrypt(basis.fromRns(c));
     }
 
-    private BigInteger[][] powersOf2Mat(BigInteger[][] x, BigInteger q) {
-        BigInteger[][] xToPowersOf2Mat = new BigInteger[x.length][x[0].length];
-        for (int i = 0; i < x[0].length; i++){
-            for (int j = 0; j < x.length; j++){
-                xToPowersOf2Mat[j][i] = BigInteger.TWO.pow(i).multiply(x[j][i]).mod(q);
+    /**
+     * Adds two ciphertexts, after refreshing the one at the higher level down to the level of the other.
+     * The sum is refreshed to the next level, unless it is at level 0.
+     * @param c1 the first ciphertext.
+     * @param c2 the second ciphertext.
+     * @return Returns an encryption of the sum of the bits modulo 2.
+     */
+    public RnsVector addCiphers(RnsVector c1, RnsVector c2){
+        while (c1.getLevel() != c2.getLevel()){
+            if (c1.getLevel() < c2.getLevel()){
+                c2 = refresh(c2);
+            } else {
+                c1 = refresh(c1);
             }
         }
-        return xToPowersOf2Mat;
+        RnsVector c3 = c1.add(c2);
+        return c3.getLevel() == 0 ? c3 : refresh(c3);
     }
 
-    private BigInteger[] powersOf2(BigInteger[] x, BigInteger q) {
-        BigInteger[] xToPowersOf2 = new BigInteger[x.length * q.bitLength()];
-        for (int i = 0; i < q.bitLength(); i++){
-            for (int j = 0; j < x.length; j++){
-                xToPowersOf2[i * x.length + j] = BigInteger.TWO.pow(i).multiply(x[j]);
+    /**
+     * Multiplies two ciphertexts, after refreshing the one at the higher level down to the level of the other.
+     * The tensor product c1 ⊗ c2 decrypts under s ⊗ s, and is refreshed to a ciphertext of the next level under its
+     * secret key - so the ciphertexts must be at level 1 or above.
+     * @param c1 the first ciphertext.
+     * @param c2 the second ciphertext.
+     * @return Returns an encryption of the product of the bits.
+     */
+    public RnsVector multCiphers(RnsVector c1, RnsVector c2){
+        while (c1.getLevel() != c2.getLevel()){
+            if (c1.getLevel() < c2.getLevel()){
+                c2 = refresh(c2);
+            } else {
+                c1 = refresh(c1);
             }
         }
-        return xToPowersOf2;
+        return refreshTensor(tensor(c1, c2));
     }
 
-    private BigInteger[][] switchKeyGen(BigInteger[][] sjprimeprime, EParty p1, EParty p2, BigInteger q){
-        BigInteger[][] A = p2.publicKeyGen(p2.getSecretKey(), (sjprimeprime.length * q.bitLength()));
-        BigInteger[] pow2SjprimeprimeVec = new BigInteger[sjprimeprime.length * sjprimeprime[0].length];
-        BigInteger[][] pow2Sjprimeprime = powersOf2Mat(sjprimeprime, q);
-        for (int i = 0; i < pow2Sjprimeprime.length; i++){
-            System.arraycopy(pow2Sjprimeprime[i], 0, pow2SjprimeprimeVec, i * pow2Sjprimeprime[0].length, pow2Sjprimeprime[0].length);
+    /**
+     * Refreshes a ciphertext from level j to level j - 1, see 'refreshTensor' - the ciphertext c under s is the vector
+     * (c, 0, ..., 0) under (1, s ⊗ s).
+     * @param c the ciphertext at level j ≥ 1.
+     * @return Returns the refreshed ciphertext, at level j - 1.
+     */
+    public RnsVector refresh(RnsVector c){
+        int level = c.getLevel();
+        int n = parties[level].getN();
+        if (c.length != n + 1){
+            throw new ArithmeticException("The ciphertext does not match the secret key of its level.");
         }
-        for (int i = 0; i < A.length; i++){
-                A[i][0] = A[i][0].add(pow2SjprimeprimeVec[i]).mod(q);
+        RnsVector t = new RnsVector(basis, level, tensorLength(n));
+        for (int i = 0; i <= level; i++){
+            System.arraycopy(c.limbs[i], 0, t.limbs[i], 0, c.length);
         }
-        return A;
+        return refreshTensor(t);
     }
 
-    private BigInteger[] switchKey(BigInteger[][] tau, BigInteger[] c1, BigInteger q){
-        BigInteger[] c1DecompVec = new BigInteger[tau.length];
-        BigInteger[][] c1Decomp = bitDecompVector(c1, q);
-        for (int i = 0; i < c1Decomp.length; i++){
-            System.arraycopy(c1Decomp[i], 0, c1DecompVec, i * c1Decomp[0].length, c1Decomp[0].length);
+    /**
+     * Refreshes a ciphertext under (1, s_j ⊗ s_j) from level j to a ciphertext under s_(j - 1) at level j - 1 -
+     * Powersof2 turns it into a ciphertext under the short key BitDecomp(1, s_j ⊗ s_j), modulus switching from q_j to
+     * q_(j - 1) is done in RNS, see 'RnsBasis.switchModulus', and key switching with τ_j gives a ciphertext under s_(j - 1).
+     * @param t the ciphertext at level j, of length 1 + n_j + n_j(n_j + 1)/2.
+     * @return Returns the refreshed ciphertext, at level j - 1.
+     */
+    private RnsVector refreshTensor(RnsVector t){
+        int level = t.getLevel();
+        if (level == 0){
+            throw new ArithmeticException("A ciphertext at level 0 cannot be refreshed - there is no lower level.");
         }
-        return matrixMultVec(tau, c1DecompVec, q);
+        RnsVector c1 = t.powersOf2(parties[level].getQ().bitLength());
+        RnsVector c2 = basis.switchModulus(c1, 2);
+        return switchKey(level, c2);
     }
 
-    private BigInteger[] tensorVecs(BigInteger[] c1, BigInteger[] c2, BigInteger q) {
-        BigInteger[] c1Tensorc2 = new BigInteger[(c1.length - 1) * (c2.length - 1) + 1];
-        c1Tensorc2[(c1.length - 1) * (c2.length - 1)] = c1[c1.length - 1];
-        for (int i = 0; i < c1.length - 1; i++) {
-            for (int j = 0; j < c2.length - 1; j++){
-                c1Tensorc2[i * (c1.length - 1) + j] = c1[i].multiply(c2[j]).mod(q);
+    /**
+     * The tensor product of two ciphertexts under s = (1, s_1, ..., s_n), in the order of (1, 'EParty.tensorVecSelf') -
+     * the entry of 1 · 1, those of s_i · 1 for i ≥ 1, then those of s_i · s_k for 1 ≤ i ≤ k, whose coefficient is the
+     * sum of the two products when i < k.
+     * @param a the first ciphertext.
+     * @param b the second ciphertext, at the same level.
+     * @return Returns a ⊗ b, which decrypts under (1, s ⊗ s) to the product of the decryptions of a and b.
+     */
+    private RnsVector tensor(RnsVector a, RnsVector b){
+        int level = a.getLevel();
+        int n = parties[level].getN();
+        if (a.length != n + 1 || b.length != n + 1 || b.getLevel() != level){
+            throw new ArithmeticException("The ciphertexts do not match the secret key of their level.");
+        }
+        RnsVector t = new RnsVector(basis, level, tensorLength(n));
+        for (int l = 0; l <= level; l++){
+            long p = basis.getPrime(l);
+            long[] x = a.limbs[l], y = b.limbs[l], z = t.limbs[l];
+            z[0] = x[0] * y[0] % p;
+            for (int i = 1; i <= n; i++){
+                z[i] = (x[0] * y[i] + x[i] * y[0]) % p;
+            }
+            int offset = n + 1;
+            for (int i = 1; i <= n; i++){
+                z[offset++] = x[i] * y[i] % p;
+                for (int k = i + 1; k <= n; k++){
+                    z[offset++] = (x[i] * y[k] + x[k] * y[i]) % p;
+                }
             }
         }
-        return c1Tensorc2;
+        return t;
     }
 
-    private BigInteger[] constMultVec(BigInteger c, BigInteger[] v, BigInteger q) {
-        BigInteger[] cTimesV = new BigInteger[v.length];
-        for (int i = 0; i < v.length - 1; i++) {
-            cTimesV[i] = v[i].multiply(c).mod(q);
-        }
-        return cTimesV;
+    /**
+     * The length of a ciphertext under (1, s ⊗ s).
+     * @param n the dimension of the secret key.
+     * @return Returns 1 + n + n(n + 1)/2.
+     */
+    private static int tensorLength(int n){
+        return 1 + n + n * (n + 1) / 2;
     }
 
-    private BigInteger[] matrixMultVec(BigInteger[][] M, BigInteger[] v, BigInteger q){
-        BigInteger[] As = allZeroVec(M.length + 1);
-        for (int i = 0; i < M.length; i++) {
-            for (int j = 0; j < M[0].length; j++) {
-                As[i] = As[i].add(M[i][j].multiply(v[j])).mod(q);
-            }
-        }
-        As[M.length] = As[M.length].subtract(BigInteger.ONE);
-        return As;
+    /**
+     * The key of a tensor product of ciphertexts, see 'tensor'.
+     * @param party the party of a level, whose secret key has been generated.
+     * @return Returns (1, s ⊗ s).
+     */
+    private BigInteger[] tensorWithOne(EParty party){
+        BigInteger[] sTensorS = party.tensorVecSelf();
+        BigInteger[] withOne = new BigInteger[sTensorS.length + 1];
+        withOne[0] = BigInteger.ONE;
+        System.arraycopy(sTensorS, 0, withOne, 1, sTensorS.length);
+        return withOne;
     }
 
-    private BigInteger[] vecMult(BigInteger[] v, BigInteger[] u, BigInteger q){
-        BigInteger[] vMultU = allZeroVec(v.length);
-        for (int i = 0; i < v.length; i++){
-            vMultU[i] = v[i].multiply(u[i]).mod(q);
+    /**
+     * BitDecomp of the BGV scheme, in the order of 'RnsVector.powersOf2', such that
+     * ⟨Powersof2(c), BitDecomp(x)⟩ = ⟨c, x⟩ mod q.
+     * @param x the vector - entries must be in [0, q).
+     * @param q the modulus.
+     * @return Returns (u_0, ..., u_(log(q) - 1)), where u_b holds bit b of every entry of x.
+     */
+    private BigInteger[] bitDecomp(BigInteger[] x, BigInteger q){
+        int bits = q.bitLength();
+        BigInteger[] xDecomp = new BigInteger[bits * x.length];
+        for (int b = 0; b < bits; b++){
+            for (int i = 0; i < x.length; i++){
+                xDecomp[b * x.length + i] = x[i].testBit(b) ? BigInteger.ONE : BigInteger.ZERO;
+            }
         }
-        return vMultU;
+        return xDecomp;
     }
 
-    private BigInteger[] vecAdd(BigInteger[] v, BigInteger[] u, BigInteger q){
-        BigInteger[] vAddU = allZeroVec(v.length);
-        for (int i = 0; i < v.length; i++){
-            vAddU[i] = v[i].add(u[i]).mod(q);
+    /**
+     * SwitchKeyGen of the BGV scheme, from a key s1 of 0/1-entries to the secret key s2 of level j - 1, generated in RNS.
+     * Row b · |s1| + i is an LWE sample (⟨a, s2'⟩ + 2e, -a) under s2 with 2^b · s1[i] added to its first entry, so the rows
+     * selected by BitDecomp(c) sum to a ciphertext under s2 of ⟨c, s1⟩. A uniform number modulo q_(j - 1) has independent
+     * uniform residues, so a is drawn limb by limb, while e is drawn once per row and reduced into every limb.
+     * @param s1 the key switched from, BitDecomp(1, s_j ⊗ s_j).
+     * @param target the party of level j - 1, whose secret key s2 has been generated.
+     * @param level the level j - 1.
+     * @return Returns τ_j, stored row after row.
+     */
+    private RnsVector switchKeyGen(BigInteger[] s1, EParty target, int level){
+        int bits = target.getQ().bitLength();
+        int columns = target.getN() + 1;
+        long rows = (long) s1.length * bits;
+        if (rows * columns > Integer.MAX_VALUE){
+            throw new IllegalArgumentException("The key-switching matrix of level " + (level + 1) + " has too many entries - "
+                    + rows + " rows of " + columns + " - for lambda and L.");
         }
-        return vAddU;
+        RnsVector s2 = basis.toRns(target.getSecretKey(), level);
+        RnsVector tau = new RnsVector(basis, level, (int) (rows * columns));
+        long[][] powers = new long[level + 1][bits];
+        for (int l = 0; l <= level; l++){
+            powers[l][0] = 1;
+            for (int b = 1; b < bits; b++){
+                powers[l][b] = 2 * powers[l][b - 1] % basis.getPrime(l);
+            }
+        }
+        Random rand = randomness.current();
+        for (int row = 0; row < rows; row++){
+            int b = row / s1.length;
+            boolean selected = s1[row % s1.length].signum() != 0;
+            long e = gaussian.sample(rand);
+            int start = row * columns;
+            for (int l = 0; l <= level; l++){
+                long p = basis.getPrime(l);
+                long[] limb = tau.limbs[l];
+                long[] s = s2.limbs[l];
+                long sum = 0;
+                for (int k = 1; k < columns; k++){
+                    long a = rand.nextInt((int) p);
+                    sum = (sum + a * s[k]) % p;
+                    limb[start + k] = a == 0 ? 0 : p - a;
+                }
+                sum = Math.floorMod(sum + 2 * e, p);
+                if (selected){
+                    sum = (sum + powers[l][b]) % p;
+                }
+                limb[start] = sum;
+            }
+        }
+        return tau;
     }
 
-    private BigInteger[] vecSub(BigInteger[] v, BigInteger[] u, BigInteger q){
-        BigInteger[] vSubU = allZeroVec(v.length);
-        for (int i = 0; i < v.length; i++){
-            vSubU[i] = v[i].subtract(u[i]).mod(q);
+    /**
+     * SwitchKey of the BGV scheme - BitDecomp(c)^T · τ_j, the sum of the rows of τ_j selected by the bits of c, computed
+     * limb by limb, see 'ModLinearAlgebra.addSelectedRows'.
+     * @param level the level j refreshed from.
+     * @param c the ciphertext under BitDecomp(1, s_j ⊗ s_j), at level j - 1.
+     * @return Returns the ciphertext under s_(j - 1), at level j - 1.
+     */
+    private RnsVector switchKey(int level, RnsVector c){
+        RnsVector tau = switchKeys == null ? null : switchKeys[level];
+        if (tau == null){
+            throw new ArithmeticException("There is no key-switching matrix for level " + level + ".");
+        }
+        int columns = parties[level - 1].getN() + 1;
+        int bits = parties[level - 1].getQ().bitLength();
+        if ((long) c.length * bits * columns != tau.getLength()){
+            throw new ArithmeticException("The dimension of the ciphertext does not match the key-switching matrix.");
         }
-        return vSubU;
+        BigInteger[] x = basis.fromRns(c);
+        long[] selection = new long[(int) (((long) c.length * bits + 63) >>> 6)];
+        for (int b = 0; b < bits; b++){
+            for (int i = 0; i < x.length; i++){
+                if (x[i].testBit(b)){
+                    int row = b * c.length + i;
+                    selection[row >>> 6] |= 1L << row;
+                }
+            }
+        }
+        RnsVector result = new RnsVector(basis, level - 1, columns);
+        for (int i = 0; i < level; i++){
+            ModLinearAlgebra.addSelectedRows(tau.limbs[i], columns, selection, basis.getPrime(i), result.limbs[i]);
+        }
+        return result;
     }
 
     private int log(int x){
         return (int)(Math.log(x)/Math.log(2)+1e-12);
     }
-
-    private BigInteger[] allZeroVec(int n){
-        BigInteger[] allZero = new BigInteger[n];
-        Arrays.fill(allZero, BigInteger.ZERO);
-        return allZero;
-    }
 }
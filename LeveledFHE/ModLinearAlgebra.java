@@ -0,0 +1,255 @@
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * The modular linear algebra of the leveled FHE scheme, shared by EParty and FHEParty.
+ * Sums of products are accumulated exactly and reduced modulo q once per entry of the result rather than after every
+ * multiply-add. A product with a transposed matrix is computed as a combination of the rows of the matrix, so the
+ * transpose is never materialised. Large products are split into blocks of rows or columns that are computed in the
+ * common fork-join pool.
+ */
+final class ModLinearAlgebra {
+    /**
+     * The number of rows of a block of 'matrixVector'.
+     */
+    static final int ROWS_PER_BLOCK = 32;
+
+    /**
+     * The number of columns of a block of 'vectorMatrix' and 'addSelectedRows'.
+     */
+    static final int COLUMNS_PER_BLOCK = 64;
+
+    /**
+     * The number of selection vectors of a block of 'selectedRowSums'.
+     */
+    static final int VECTORS_PER_BLOCK = 16;
+
+    private ModLinearAlgebra() {
+    }
+
+    /**
+     * The product of a matrix and a vector.
+     * @param A the m × n matrix.
+     * @param x the vector of dimension n.
+     * @param q the modulus.
+     * @return Returns A · x mod q.
+     */
+    static BigInteger[] matrixVector(BigInteger[][] A, BigInteger[] x, BigInteger q) {
+        BigInteger[] Ax = new BigInteger[A.length];
+        new RowBlocks(A, x, q, Ax, 0, A.length).invoke();
+        return Ax;
+    }
+
+    /**
+     * The product of a vector and a matrix - equal to A^T · y, without transposing A.
+     * Entries of y that are 0 are skipped and entries that are 1 add a row without multiplying, so a random 0/1-vector
+     * as used by encryption costs about half the additions and no multiplications.
+     * @param y the vector of dimension m.
+     * @param A the m × n matrix.
+     * @param q the modulus.
+     * @return Returns y^T · A mod q.
+     */
+    static BigInteger[] vectorMatrix(BigInteger[] y, BigInteger[][] A, BigInteger q) {
+        BigInteger[] yA = new BigInteger[A[0].length];
+        new ColumnBlocks(y, A, q, yA, 0, yA.length).invoke();
+        return yA;
+    }
+
+    /**
+     * The products of many 0/1-vectors and a matrix - a matrix-matrix product R · A where the rows of R are given as
+     * bit vectors. The vectors are processed in blocks of 'VECTORS_PER_BLOCK', and every row of A is read once per block
+     * and added to the sums of the vectors of the block that select it.
+     * @param selections the vectors - row i of A is selected by vector k if bit (i mod 64) of selections[k][i / 64] is set.
+     * @param A the m × n matrix.
+     * @param q the modulus.
+     * @return Returns the products, one vector of dimension n per selection vector, reduced mod q.
+     */
+    static BigInteger[][] selectedRowSums(long[][] selections, BigInteger[][] A, BigInteger q) {
+        BigInteger[][] sums = new BigInteger[selections.length][];
+        new SelectionBlocks(selections, A, q, sums, 0, selections.length).invoke();
+        return sums;
+    }
+
+    /**
+     * The sum of the rows of a matrix of residues selected by a 0/1-vector, e.g. BitDecomp(c)^T · τ of key switching.
+     * The residues are below 2^31 and so is the number of rows, so the entries are only reduced once, at the end.
+     * @param matrix the matrix, stored row after row - entries must be in [0, p).
+     * @param columns the number of columns.
+     * @param selection the selected rows - row i is selected if bit (i mod 64) of selection[i / 64] is set.
+     * @param p the modulus - below 2^31.
+     * @param dst the array to store the sum in.
+     */
+    static void addSelectedRows(long[] matrix, int columns, long[] selection, long p, long[] dst) {
+        new SelectedRows(matrix, columns, selection, p, dst, 0, columns).invoke();
+    }
+
+    private static final class RowBlocks extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final BigInteger[][] A;
+        private final BigInteger[] x, dst;
+        private final BigInteger q;
+        private final int from, to;
+
+        RowBlocks(BigInteger[][] A, BigInteger[] x, BigInteger q, BigInteger[] dst, int from, int to) {
+            this.A = A;
+            this.x = x;
+            this.q = q;
+            this.dst = dst;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > ROWS_PER_BLOCK) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new RowBlocks(A, x, q, dst, from, middle), new RowBlocks(A, x, q, dst, middle, to));
+                return;
+            }
+            for (int i = from; i < to; i++) {
+                BigInteger[] row = A[i];
+                BigInteger sum = BigInteger.ZERO;
+                for (int j = 0; j < row.length; j++) {
+                    sum = sum.add(row[j].multiply(x[j]));
+                }
+                dst[i] = sum.mod(q);
+            }
+        }
+    }
+
+    private static final class ColumnBlocks extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final BigInteger[] y, dst;
+        private final BigInteger[][] A;
+        private final BigInteger q;
+        private final int from, to;
+
+        ColumnBlocks(BigInteger[] y, BigInteger[][] A, BigInteger q, BigInteger[] dst, int from, int to) {
+            this.y = y;
+            this.A = A;
+            this.q = q;
+            this.dst = dst;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > COLUMNS_PER_BLOCK) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new ColumnBlocks(y, A, q, dst, from, middle), new ColumnBlocks(y, A, q, dst, middle, to));
+                return;
+            }
+            BigInteger[] sums = new BigInteger[to - from];
+            Arrays.fill(sums, BigInteger.ZERO);
+            for (int i = 0; i < A.length; i++) {
+                int sign = y[i].signum();
+                if (sign == 0) {
+                    continue;
+                }
+                BigInteger[] row = A[i];
+                boolean one = y[i].equals(BigInteger.ONE);
+                for (int j = from; j < to; j++) {
+                    sums[j - from] = sums[j - from].add(one ? row[j] : row[j].multiply(y[i]));
+                }
+            }
+            for (int j = from; j < to; j++) {
+                dst[j] = sums[j - from].mod(q);
+            }
+        }
+    }
+
+    private static final class SelectionBlocks extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final long[][] selections;
+        private final BigInteger[][] A, dst;
+        private final BigInteger q;
+        private final int from, to;
+
+        SelectionBlocks(long[][] selections, BigInteger[][] A, BigInteger q, BigInteger[][] dst, int from, int to) {
+            this.selections = selections;
+            this.A = A;
+            this.q = q;
+            this.dst = dst;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > VECTORS_PER_BLOCK) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new SelectionBlocks(selections, A, q, dst, from, middle), new SelectionBlocks(selections, A, q, dst, middle, to));
+                return;
+            }
+            int n = A[0].length;
+            for (int k = from; k < to; k++) {
+                dst[k] = new BigInteger[n];
+                Arrays.fill(dst[k], BigInteger.ZERO);
+            }
+            for (int i = 0; i < A.length; i++) {
+                BigInteger[] row = A[i];
+                int word = i >>> 6;
+                long mask = 1L << i;
+                for (int k = from; k < to; k++) {
+                    if ((selections[k][word] & mask) != 0) {
+                        BigInteger[] sum = dst[k];
+                        for (int j = 0; j < n; j++) {
+                            sum[j] = sum[j].add(row[j]);
+                        }
+                    }
+                }
+            }
+            for (int k = from; k < to; k++) {
+                for (int j = 0; j < n; j++) {
+                    dst[k][j] = dst[k][j].mod(q);
+                }
+            }
+        }
+    }
+
+    private static final class SelectedRows extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final long[] matrix, selection, dst;
+        private final int columns, from, to;
+        private final long p;
+
+        SelectedRows(long[] matrix, int columns, long[] selection, long p, long[] dst, int from, int to) {
+            this.matrix = matrix;
+            this.columns = columns;
+            this.selection = selection;
+            this.p = p;
+            this.dst = dst;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > COLUMNS_PER_BLOCK) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new SelectedRows(matrix, columns, selection, p, dst, from, middle),
+                        new SelectedRows(matrix, columns, selection, p, dst, middle, to));
+                return;
+            }
+            long[] sums = new long[to - from];
+            // Fewer than 2^31 rows of entries below 2^31, as a matrix is one array, so no sum exceeds 2^62.
+            for (int word = 0; word < selection.length; word++) {
+                for (long bits = selection[word]; bits != 0; bits &= bits - 1) {
+                    int offset = ((word << 6) + Long.numberOfTrailingZeros(bits)) * columns;
+                    for (int j = from; j < to; j++) {
+                        sums[j - from] += matrix[offset + j];
+                    }
+                }
+            }
+            for (int j = 0; j < sums.length; j++) {
+                dst[from + j] = sums[j] % p;
+            }
+        }
+    }
+}
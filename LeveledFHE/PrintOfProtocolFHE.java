@@ -1,5 +1,3 @@
-import java.math.BigInteger;
-import java.util.Arrays;
 import java.util.Scanner;
 
 public class PrintOfProtocolFHE {
@@ -21,42 +19,19 @@ public class PrintOfProtocolFHE {
         }
         System.out.println("The following has been registered as the bit, dimension, modulus:");
         System.out.println("w:" + w + ", lambda:" + lambda + ", chi:" + chi);
-        FHEParty p1 = new FHEParty(lambda, chi, 6);
+        FHEParty p1 = new FHEParty(lambda, chi, 2);
         p1.keyGen();
-        BigInteger[] x0 = p1.encrypt(w);
-        BigInteger[] one0 = p1.encrypt(1);
-        BigInteger[] c1 = p1.addCiphers(one0, x0);
-
-        BigInteger[] y0 = p1.encrypt(0);
-        BigInteger[] c2 = p1.multCiphers(y0, c1);
-
-        BigInteger[] one1 = p1.encrypt(1);
-        BigInteger[] c3 = p1.multCiphers(one1, c2);
-
-        BigInteger[] x1 = p1.encrypt(w);
-        BigInteger[] one3 = p1.encrypt(1);
-        BigInteger[] c4 = p1.addCiphers(one3, x1);
-
-        BigInteger[] y1 = p1.encrypt(0);
-        BigInteger[] c5 = p1.multCiphers(y1, c4);
-
-        BigInteger[] one4 = p1.encrypt(1);
-        BigInteger[] c6 = p1.multCiphers(one4, c5);
-
-        BigInteger[] c7 = p1.multCiphers(c3, c6);
-
-        BigInteger[] x2 = p1.encrypt(w);
-        BigInteger[] one5 = p1.encrypt(1);
-        BigInteger[] c8 = p1.addCiphers(one5, x2);
-
-        BigInteger[] y2 = p1.encrypt(0);
-        BigInteger[] c9 = p1.multCiphers(y2, c8);
-
-        BigInteger[] one6 = p1.encrypt(1);
-        BigInteger[] c10 = p1.multCiphers(one6, c9);
-
-        BigInteger[] encryptedResult = p1.multCiphers(c7, c10);
-
-        System.out.println("(1 ⊕ (0 · (1 ⊕ w))) · (1 ⊕ (0 · (1 ⊕ w))) · (1 ⊕ (0 · (1 ⊕ w))): " + p1.decrypt(encryptedResult));
+        RnsVector x = p1.encrypt(w);
+        RnsVector one0 = p1.encrypt(1);
+        RnsVector c1 = p1.addCiphers(one0, x);
+        System.out.println("1 ⊕ w at level " + c1.getLevel() + ": " + p1.decrypt(c1));
+
+        RnsVector one1 = p1.encrypt(1);
+        RnsVector c2 = p1.multCiphers(one1, c1);
+        System.out.println("1 · (1 ⊕ w) at level " + c2.getLevel() + ": " + p1.decrypt(c2));
+
+        RnsVector y = p1.encrypt(0);
+        RnsVector encryptedResult = p1.addCiphers(c2, y);
+        System.out.println("(1 · (1 ⊕ w)) ⊕ 0 at level " + encryptedResult.getLevel() + ": " + p1.decrypt(encryptedResult));
     }
 }
\ No newline at end of file
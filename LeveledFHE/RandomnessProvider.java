@@ -0,0 +1,143 @@
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Random;
+
+/**
+ * The source of randomness of the leveled FHE scheme, shared by all the parties of a process.
+ * Every thread draws from its own DRBG instance through a large buffer, so drawing randomness neither seeds a new
+ * SecureRandom nor synchronises with other threads, and most draws are copies out of the buffer.
+ * Each DRBG is reseeded from the system's entropy source every 'RESEED_INTERVAL' refills of the buffer.
+ */
+public final class RandomnessProvider {
+    /**
+     * Size of the buffer of a thread in bytes.
+     */
+    static final int BUFFER_SIZE = 4096;
+
+    /**
+     * Number of refills of a thread's buffer between reseeds of its DRBG - 4 MiB.
+     */
+    static final int RESEED_INTERVAL = 1024;
+
+    private static final RandomnessProvider DEFAULT = new RandomnessProvider();
+
+    private final ThreadLocal<BufferedRandom> generators = ThreadLocal.withInitial(BufferedRandom::new);
+
+    /**
+     * The provider used by parties that are not given one explicitly.
+     * @return Returns the process-wide RandomnessProvider.
+     */
+    public static RandomnessProvider getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * The generator of the calling thread - may only be used by that thread.
+     * @return Returns the generator of the calling thread.
+     */
+    Random current() {
+        return generators.get();
+    }
+
+    /**
+     * Fills an array of words with random bits, e.g. the random vectors of encryption.
+     * @param words the array to fill.
+     * @param bits the number of random bits - the bits of 'words' from this index on are cleared.
+     */
+    void fillBits(long[] words, int bits) {
+        BufferedRandom generator = generators.get();
+        int fullWords = bits >>> 6;
+        for (int i = 0; i < fullWords; i++) {
+            words[i] = generator.nextLong();
+        }
+        if ((bits & 63) != 0) {
+            words[fullWords] = generator.nextLong() & ((1L << (bits & 63)) - 1);
+            fullWords++;
+        }
+        for (int i = fullWords; i < words.length; i++) {
+            words[i] = 0;
+        }
+    }
+
+    /**
+     * Samples a uniformly random element of [0, q) by rejecting numbers of q's bit length that are too large.
+     * @param q the modulus.
+     * @return Returns the sample.
+     */
+    BigInteger nextMod(BigInteger q) {
+        BufferedRandom generator = generators.get();
+        BigInteger x;
+        do {
+            x = new BigInteger(q.bitLength(), generator);
+        } while (x.compareTo(q) >= 0);
+        return x;
+    }
+
+    /**
+     * A Random serving the output of a thread-confined DRBG from a buffer.
+     */
+    private static final class BufferedRandom extends Random {
+        private static final long serialVersionUID = 1L;
+
+        private final SecureRandom drbg;
+        private final boolean reseedable;
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        private int refills;
+
+        BufferedRandom() {
+            super(0);
+            SecureRandom source;
+            boolean isDrbg;
+            try {
+                source = SecureRandom.getInstance("DRBG");
+                isDrbg = true;
+            } catch (NoSuchAlgorithmException e) {
+                source = new SecureRandom();
+                isDrbg = false;
+            }
+            this.drbg = source;
+            this.reseedable = isDrbg;
+            buffer.position(BUFFER_SIZE);
+        }
+
+        @Override
+        protected int next(int bits) {
+            if (buffer.remaining() < Integer.BYTES) {
+                refill();
+            }
+            return buffer.getInt() >>> (32 - bits);
+        }
+
+        @Override
+        public long nextLong() {
+            if (buffer.remaining() < Long.BYTES) {
+                refill();
+            }
+            return buffer.getLong();
+        }
+
+        @Override
+        public void nextBytes(byte[] bytes) {
+            int filled = 0;
+            while (filled < bytes.length) {
+                if (!buffer.hasRemaining()) {
+                    refill();
+                }
+                int length = Math.min(buffer.remaining(), bytes.length - filled);
+                buffer.get(bytes, filled, length);
+                filled += length;
+            }
+        }
+
+        private void refill() {
+            if (reseedable && ++refills == RESEED_INTERVAL) {
+                drbg.reseed();
+                refills = 0;
+            }
+            drbg.nextBytes(buffer.array());
+            buffer.clear();
+        }
+    }
+}
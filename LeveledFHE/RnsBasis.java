@@ -0,0 +1,190 @@
+import java.math.BigInteger;
+import java.util.Random;
+
+/**
+ * The chain of moduli q_0 < q_1 < ... < q_L of the leveled FHE scheme in a residue number system (RNS).
+ * q_j is the product of the first j + 1 primes p_0, ..., p_j of the basis, each below 2^31, so a number modulo q_j is
+ * stored as its j + 1 residues - limbs - which are added and multiplied with primitive long arithmetic.
+ * Switching from q_j to q_(j - 1) drops the limb of p_j, see 'switchModulus', instead of dividing BigIntegers.
+ */
+public final class RnsBasis {
+    /**
+     * The largest bit length of a prime - the product of two residues fits in a long.
+     */
+    static final int MAX_PRIME_BITS = 31;
+
+    private final long[] primes;
+    private final BigInteger[] moduli;
+    /**
+     * inverses[j][i] = p_j^-1 mod p_i for i < j, used when the limb of p_j is dropped.
+     */
+    private final long[][] inverses;
+    /**
+     * crtFactors[j][i] = (q_j / p_i) · ((q_j / p_i)^-1 mod p_i), such that x = ∑x_i · crtFactors[j][i] mod q_j.
+     */
+    private final BigInteger[][] crtFactors;
+
+    /**
+     * Constructs an RnsBasis object from distinct odd primes.
+     * @param primes the primes p_0, ..., p_L - each below 2^31.
+     */
+    public RnsBasis(long[] primes) {
+        this.primes = primes.clone();
+        int count = primes.length;
+        this.moduli = new BigInteger[count];
+        this.inverses = new long[count][];
+        this.crtFactors = new BigInteger[count][];
+        BigInteger product = BigInteger.ONE;
+        for (int j = 0; j < count; j++) {
+            if (primes[j] < 3 || primes[j] >= 1L << MAX_PRIME_BITS || (primes[j] & 1) == 0) {
+                throw new IllegalArgumentException("Invalid prime - the primes must be odd and below 2^" + MAX_PRIME_BITS + ".");
+            }
+            BigInteger p = BigInteger.valueOf(primes[j]);
+            product = product.multiply(p);
+            moduli[j] = product;
+            inverses[j] = new long[j];
+            crtFactors[j] = new BigInteger[j + 1];
+            for (int i = 0; i <= j; i++) {
+                BigInteger pi = BigInteger.valueOf(primes[i]);
+                if (i < j) {
+                    inverses[j][i] = p.modInverse(pi).longValue();
+                }
+                BigInteger cofactor = product.divide(pi);
+                crtFactors[j][i] = cofactor.multiply(cofactor.modInverse(pi));
+            }
+        }
+    }
+
+    /**
+     * Draws a basis of L + 1 distinct random primes of a given bit length.
+     * @param levels the highest level L.
+     * @param primeBits the bit length of every prime - must be in [3, 31].
+     * @param rand the source of the random primes.
+     * @return Returns the basis.
+     */
+    public static RnsBasis generate(int levels, int primeBits, Random rand) {
+        if (primeBits < 3 || primeBits > MAX_PRIME_BITS) {
+            throw new IllegalArgumentException("Invalid bit length of the primes - it must be in [3, " + MAX_PRIME_BITS + "].");
+        }
+        long[] primes = new long[levels + 1];
+        int found = 0;
+        for (int attempts = 0; found < primes.length; attempts++) {
+            if (attempts > 64 * primes.length) {
+                throw new IllegalArgumentException("Too few primes of bit length " + primeBits + " for " + (levels + 1) + " levels.");
+            }
+            long p = BigInteger.probablePrime(primeBits, rand).longValue();
+            boolean distinct = true;
+            for (int i = 0; i < found; i++) {
+                distinct &= primes[i] != p;
+            }
+            if (distinct) {
+                primes[found++] = p;
+            }
+        }
+        return new RnsBasis(primes);
+    }
+
+    /**
+     * Simple getter method for the highest level.
+     * @return Returns L.
+     */
+    public int getLevels() {
+        return primes.length - 1;
+    }
+
+    /**
+     * Simple getter method for a prime of the basis.
+     * @param i the index of the prime.
+     * @return Returns p_i.
+     */
+    public long getPrime(int i) {
+        return primes[i];
+    }
+
+    /**
+     * Simple getter method for the modulus of a level.
+     * @param level the level j.
+     * @return Returns q_j = p_0 · ... · p_j.
+     */
+    public BigInteger getModulus(int level) {
+        return moduli[level];
+    }
+
+    /**
+     * Converts a vector of numbers to its residues modulo the primes of a level.
+     * @param x the vector - may hold any integers, including negative ones.
+     * @param level the level j.
+     * @return Returns x mod q_j in RNS.
+     */
+    public RnsVector toRns(BigInteger[] x, int level) {
+        RnsVector v = new RnsVector(this, level, x.length);
+        for (int i = 0; i <= level; i++) {
+            BigInteger p = BigInteger.valueOf(primes[i]);
+            long[] limb = v.limbs[i];
+            for (int l = 0; l < x.length; l++) {
+                limb[l] = x[l].mod(p).longValue();
+            }
+        }
+        return v;
+    }
+
+    /**
+     * Reconstructs the numbers of a vector in RNS by the Chinese remainder theorem.
+     * @param v the vector.
+     * @return Returns the vector with entries in [0, q_j) for the level j of v.
+     */
+    public BigInteger[] fromRns(RnsVector v) {
+        int level = v.getLevel();
+        BigInteger[] x = new BigInteger[v.length];
+        for (int l = 0; l < v.length; l++) {
+            BigInteger sum = BigInteger.ZERO;
+            for (int i = 0; i <= level; i++) {
+                sum = sum.add(crtFactors[level][i].multiply(BigInteger.valueOf(v.limbs[i][l])));
+            }
+            x[l] = sum.mod(moduli[level]);
+        }
+        return x;
+    }
+
+    /**
+     * Modulus switching from q_j to q_(j - 1) that preserves the residues modulo r, as described in
+     * (Leveled) Fully Homomorphic Encryption without Bootstrapping - Brakerski, Gentry and Vaikuntanathan.
+     * Every entry c becomes (c - δ) / p_j, where δ ≡ c mod p_j and δ ≡ 0 mod r is the smallest such number; δ only
+     * depends on the limb of p_j, so it is reduced into the other limbs and the limb of p_j is dropped.
+     * @param c the vector at level j ≥ 1.
+     * @param r the plaintext modulus - must be coprime to p_j.
+     * @return Returns the vector at level j - 1.
+     */
+    public RnsVector switchModulus(RnsVector c, long r) {
+        int level = c.getLevel();
+        if (level == 0) {
+            throw new IllegalArgumentException("A vector at level 0 cannot be switched to a smaller modulus.");
+        }
+        long p = primes[level];
+        long rInverse = BigInteger.valueOf(r).modInverse(BigInteger.valueOf(p)).longValue();
+        long[] top = c.limbs[level];
+        long[] delta = new long[c.length];
+        for (int l = 0; l < c.length; l++) {
+            long d = top[l] * rInverse % p;
+            if (d > p / 2) {
+                d -= p;
+            }
+            delta[l] = d * r;
+        }
+        RnsVector result = new RnsVector(this, level - 1, c.length);
+        for (int i = 0; i < level; i++) {
+            long pi = primes[i];
+            long inverse = inverses[level][i];
+            long[] src = c.limbs[i];
+            long[] dst = result.limbs[i];
+            for (int l = 0; l < c.length; l++) {
+                long difference = (src[l] - delta[l] % pi) % pi;
+                if (difference < 0) {
+                    difference += pi;
+                }
+                dst[l] = difference * inverse % pi;
+            }
+        }
+        return result;
+    }
+}
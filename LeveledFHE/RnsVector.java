@@ -0,0 +1,117 @@
+/**
+ * A vector of numbers modulo q_j of an RnsBasis, stored as one limb of residues per prime p_0, ..., p_j.
+ * The arithmetic is limb-wise with primitive longs - residues are below 2^31, so a product fits in a long.
+ */
+public final class RnsVector {
+    final RnsBasis basis;
+    /**
+     * limbs[i][l] = x_l mod p_i.
+     */
+    final long[][] limbs;
+    final int length;
+
+    /**
+     * Constructs a zero RnsVector object.
+     * @param basis the basis of the vector.
+     * @param level the level j - the vector holds numbers modulo q_j.
+     * @param length the number of entries.
+     */
+    public RnsVector(RnsBasis basis, int level, int length) {
+        this.basis = basis;
+        this.limbs = new long[level + 1][length];
+        this.length = length;
+    }
+
+    /**
+     * Simple getter method for the level.
+     * @return Returns j - the vector holds numbers modulo q_j.
+     */
+    public int getLevel() {
+        return limbs.length - 1;
+    }
+
+    /**
+     * Simple getter method for the number of entries.
+     * @return Returns the length of the vector.
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * Entry-wise addition.
+     * @param other a vector of the same level and length.
+     * @return Returns this + other.
+     */
+    public RnsVector add(RnsVector other) {
+        RnsVector result = sameShape(other);
+        for (int i = 0; i < limbs.length; i++) {
+            long p = basis.getPrime(i);
+            for (int l = 0; l < length; l++) {
+                long sum = limbs[i][l] + other.limbs[i][l];
+                result.limbs[i][l] = sum >= p ? sum - p : sum;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Entry-wise subtraction.
+     * @param other a vector of the same level and length.
+     * @return Returns this - other.
+     */
+    public RnsVector subtract(RnsVector other) {
+        RnsVector result = sameShape(other);
+        for (int i = 0; i < limbs.length; i++) {
+            long p = basis.getPrime(i);
+            for (int l = 0; l < length; l++) {
+                long difference = limbs[i][l] - other.limbs[i][l];
+                result.limbs[i][l] = difference < 0 ? difference + p : difference;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Entry-wise multiplication.
+     * @param other a vector of the same level and length.
+     * @return Returns this · other.
+     */
+    public RnsVector multiply(RnsVector other) {
+        RnsVector result = sameShape(other);
+        for (int i = 0; i < limbs.length; i++) {
+            long p = basis.getPrime(i);
+            for (int l = 0; l < length; l++) {
+                result.limbs[i][l] = limbs[i][l] * other.limbs[i][l] % p;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Multiplication of every entry by the powers of two 2^0, ..., 2^(bits - 1), as in 'Powersof2' of the BGV scheme.
+     * @param bits the number of powers.
+     * @return Returns the vector (x, 2 · x, ..., 2^(bits - 1) · x) of length bits · length.
+     */
+    public RnsVector powersOf2(int bits) {
+        RnsVector result = new RnsVector(basis, getLevel(), bits * length);
+        for (int i = 0; i < limbs.length; i++) {
+            long p = basis.getPrime(i);
+            long power = 1;
+            for (int b = 0; b < bits; b++) {
+                for (int l = 0; l < length; l++) {
+                    result.limbs[i][b * length + l] = limbs[i][l] * power % p;
+                }
+                power = 2 * power % p;
+            }
+        }
+        return result;
+    }
+
+    private RnsVector sameShape(RnsVector other) {
+        if (other.basis != basis || other.limbs.length != limbs.length || other.length != length) {
+            throw new ArithmeticException("The vectors must have the same basis, level and length.");
+        }
+        return new RnsVector(basis, getLevel(), length);
+    }
+}
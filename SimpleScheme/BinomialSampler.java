@@ -0,0 +1,108 @@
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+/**
+ * Samples binomial distributions from random bits drawn in bulk.
+ * The centered binomial distribution ψ_k is the difference of two sums of k - 1 coin flips, as described in
+ * 'Post-quantum key exchange – a new hope∗' (https://eprint.iacr.org/2015/1092.pdf). Rather than flipping one coin
+ * per call to the source of randomness, each sum is the number of set bits in a segment of a random bit stream,
+ * counted 64 bits at a time with Long.bitCount. The bit stream is read from the source one block of words at a time.
+ * An instance is not thread-safe - each thread, or each stream of a deterministic generator, needs its own.
+ */
+final class BinomialSampler {
+    private static final int WORDS_PER_REFILL = 64;
+
+    private final Random rand;
+    private final long[] words = new long[WORDS_PER_REFILL];
+    private final byte[] bytes;
+    private int nextWord = WORDS_PER_REFILL;
+    private long current;
+    private int available;
+
+    /**
+     * Constructs a BinomialSampler object drawing from a source of randomness.
+     * @param rand the source of the random bits - a ChaChaPrg is read word by word, any other source in bulk.
+     */
+    BinomialSampler(Random rand) {
+        this.rand = rand;
+        this.bytes = rand instanceof ChaChaPrg ? null : new byte[WORDS_PER_REFILL * Long.BYTES];
+    }
+
+    /**
+     * Samples from a centered binomial distribution - mean = 0, variance (k - 1)/2.
+     * @param k defines the sample space.
+     * @return Returns a sample.
+     */
+    int sampleCentered(int k) {
+        return countBits(k - 1) - countBits(k - 1);
+    }
+
+    /**
+     * Fills a vector with samples from a centered binomial distribution.
+     * @param e the vector to fill.
+     * @param offset the first index to fill.
+     * @param length the number of samples.
+     * @param k defines the sample space.
+     */
+    void fillCentered(long[] e, int offset, int length, int k) {
+        for (int i = offset; i < offset + length; i++) {
+            e[i] = countBits(k - 1) - countBits(k - 1);
+        }
+    }
+
+    /**
+     * Samples from a binomial distribution as a sum of Bernoulli trials.
+     * Trials with p = 1/2 are single random bits, counted a word at a time; any other trial compares
+     * a uniform 53-bit fraction with p.
+     * @param n is the number of trials.
+     * @param p is the probability of success in each trial.
+     * @return Returns a sample.
+     */
+    int sampleBinomial(int n, double p) {
+        if (p == 0.5) {
+            return countBits(n);
+        }
+        long threshold = (long) (p * (1L << 53));
+        int sum = 0;
+        for (int i = 0; i < n; i++) {
+            if ((nextWord() >>> 11) < threshold) {
+                sum++;
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Counts the set bits among the next bits of the random bit stream.
+     * @param bits the number of bits to consume.
+     * @return Returns the number of ones.
+     */
+    private int countBits(int bits) {
+        int sum = 0;
+        while (bits > 0) {
+            if (available == 0) {
+                current = nextWord();
+                available = 64;
+            }
+            int take = Math.min(bits, available);
+            sum += Long.bitCount(take == 64 ? current : current & ((1L << take) - 1));
+            current = take == 64 ? 0 : current >>> take;
+            available -= take;
+            bits -= take;
+        }
+        return sum;
+    }
+
+    private long nextWord() {
+        if (nextWord == WORDS_PER_REFILL) {
+            if (bytes == null) {
+                ((ChaChaPrg) rand).nextLongs(words, 0, WORDS_PER_REFILL);
+            } else {
+                rand.nextBytes(bytes);
+                ByteBuffer.wrap(bytes).asLongBuffer().get(words);
+            }
+            nextWord = 0;
+        }
+        return words[nextWord++];
+    }
+}
@@ -0,0 +1,169 @@
+import java.security.SecureRandom;
+import java.util.Random;
+
+/**
+ * A deterministic pseudorandom generator producing the ChaCha20 keystream (RFC 8439) of a 32-byte seed.
+ * A seed defines many independent streams, each selected by a domain, separating different uses of the same seed,
+ * and a stream number, e.g. the index of a row. The 96-bit nonce of ChaCha20 is the domain followed by the stream number.
+ * The same seed, domain and stream always produce the same output, which is what allows a public key to be
+ * shared as its seed. The block function is implemented directly, as the JCA cipher refuses to be re-initialised
+ * with a key and nonce it has already used, which is exactly what seeking back to a stream requires.
+ * A generator may instead be keyed from a seed source and rekeyed from it at a fixed interval, in which case it is
+ * a buffered cryptographically secure generator rather than a deterministic one.
+ * An instance is not thread-safe.
+ */
+class ChaChaPrg extends Random {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Length of a seed in bytes - a ChaCha20 key.
+     */
+    static final int SEED_LENGTH = 32;
+
+    private final int[] key = new int[8];
+    private final int domain;
+    private final SecureRandom reseedSource;
+    private final int reseedInterval;
+    private final int[] state = new int[16];
+    private final int[] block = new int[16];
+    private final long[] words = new long[8];
+    private int nextWord;
+
+    /**
+     * Constructs a ChaChaPrg object positioned at the start of a stream.
+     * @param seed is the 32-byte seed.
+     * @param domain separates the different uses of the same seed.
+     * @param stream is the number of the stream within the domain.
+     */
+    ChaChaPrg(byte[] seed, int domain, long stream) {
+        super(0);
+        if (seed.length != SEED_LENGTH) {
+            throw new IllegalArgumentException("Invalid seed - it must be " + SEED_LENGTH + " bytes.");
+        }
+        this.domain = domain;
+        this.reseedSource = null;
+        this.reseedInterval = 0;
+        setKey(seed);
+        seek(stream);
+    }
+
+    /**
+     * Constructs a ChaChaPrg object keyed from a seed source, which draws a fresh key from the seed source
+     * every time 'reseedInterval' blocks of 64 bytes have been produced.
+     * @param reseedSource is the source of the keys.
+     * @param reseedInterval is the number of blocks produced under one key.
+     */
+    ChaChaPrg(SecureRandom reseedSource, int reseedInterval) {
+        super(0);
+        this.domain = 0;
+        this.reseedSource = reseedSource;
+        this.reseedInterval = reseedInterval;
+        reseed();
+    }
+
+    /**
+     * Moves the generator to the start of another stream within the same domain.
+     * @param stream is the number of the stream.
+     */
+    void seek(long stream) {
+        state[0] = 0x61707865;
+        state[1] = 0x3320646e;
+        state[2] = 0x79622d32;
+        state[3] = 0x6b206574;
+        System.arraycopy(key, 0, state, 4, 8);
+        state[12] = 0;
+        state[13] = domain;
+        state[14] = (int) stream;
+        state[15] = (int) (stream >>> 32);
+        nextWord = words.length;
+    }
+
+    @Override
+    public long nextLong() {
+        if (nextWord == words.length) {
+            refill();
+        }
+        return words[nextWord++];
+    }
+
+    @Override
+    protected int next(int bits) {
+        return (int) (nextLong() >>> (64 - bits));
+    }
+
+    @Override
+    public void nextBytes(byte[] bytes) {
+        for (int i = 0; i < bytes.length; i += Long.BYTES) {
+            long word = nextLong();
+            for (int j = i; j < Math.min(bytes.length, i + Long.BYTES); j++) {
+                bytes[j] = (byte) word;
+                word >>>= 8;
+            }
+        }
+    }
+
+    /**
+     * Fills a part of an array with keystream words.
+     * @param dst the array to fill.
+     * @param offset the first index to fill.
+     * @param length the number of words.
+     */
+    void nextLongs(long[] dst, int offset, int length) {
+        for (int i = 0; i < length; i++) {
+            dst[offset + i] = nextLong();
+        }
+    }
+
+    /**
+     * Computes the next 64-byte block of the keystream and advances the block counter.
+     */
+    private void refill() {
+        if (reseedSource != null && state[12] == reseedInterval) {
+            reseed();
+        }
+        System.arraycopy(state, 0, block, 0, 16);
+        int[] x = block;
+        for (int round = 0; round < 10; round++) {
+            quarterRound(x, 0, 4, 8, 12);
+            quarterRound(x, 1, 5, 9, 13);
+            quarterRound(x, 2, 6, 10, 14);
+            quarterRound(x, 3, 7, 11, 15);
+            quarterRound(x, 0, 5, 10, 15);
+            quarterRound(x, 1, 6, 11, 12);
+            quarterRound(x, 2, 7, 8, 13);
+            quarterRound(x, 3, 4, 9, 14);
+        }
+        for (int i = 0; i < 8; i++) {
+            int lo = x[2 * i] + state[2 * i];
+            int hi = x[2 * i + 1] + state[2 * i + 1];
+            words[i] = (lo & 0xffffffffL) | ((long) hi << 32);
+        }
+        state[12]++;
+        nextWord = 0;
+    }
+
+    private void reseed() {
+        byte[] seed = new byte[SEED_LENGTH];
+        reseedSource.nextBytes(seed);
+        setKey(seed);
+        seek(0);
+    }
+
+    private void setKey(byte[] seed) {
+        for (int i = 0; i < 8; i++) {
+            key[i] = (seed[4 * i] & 0xff) | (seed[4 * i + 1] & 0xff) << 8
+                    | (seed[4 * i + 2] & 0xff) << 16 | (seed[4 * i + 3] & 0xff) << 24;
+        }
+    }
+
+    private static void quarterRound(int[] x, int a, int b, int c, int d) {
+        x[a] += x[b];
+        x[d] = Integer.rotateLeft(x[d] ^ x[a], 16);
+        x[c] += x[d];
+        x[b] = Integer.rotateLeft(x[b] ^ x[c], 12);
+        x[a] += x[b];
+        x[d] = Integer.rotateLeft(x[d] ^ x[a], 8);
+        x[c] += x[d];
+        x[b] = Integer.rotateLeft(x[b] ^ x[c], 7);
+    }
+}
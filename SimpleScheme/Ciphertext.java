@@ -0,0 +1,58 @@
+import java.util.Arrays;
+
+/**
+ * An encryption (u, v) of a bit under the simple LWE encryption scheme, where u is a vector of dimension n
+ * and v a single element - u = ∑a_i, v = ∑b_i + ⌈q/2⌉ · w for the i's of a random subset S.
+ * A Ciphertext object may be reused: encrypting into it overwrites its contents without allocating.
+ */
+public class Ciphertext {
+    final long[] u;
+    long v;
+
+    /**
+     * Constructs an empty Ciphertext object to encrypt into.
+     * @param n is the dimension of the secret key.
+     */
+    public Ciphertext(int n) {
+        this.u = new long[n];
+    }
+
+    /**
+     * Constructs a Ciphertext object holding a given ciphertext.
+     * @param u the vector part of the ciphertext.
+     * @param v the last element of the ciphertext.
+     */
+    public Ciphertext(long[] u, long v) {
+        this.u = u;
+        this.v = v;
+    }
+
+    /**
+     * Simple getter method for u.
+     * @return Returns u = ∑a_i.
+     */
+    public long[] getU() {
+        return u;
+    }
+
+    /**
+     * Simple getter method for v.
+     * @return Returns v = ∑b_i + ⌈q/2⌉ · w.
+     */
+    public long getV() {
+        return v;
+    }
+
+    /**
+     * Resets the ciphertext to (0, 0) before encrypting into it.
+     */
+    void clear() {
+        Arrays.fill(u, 0);
+        v = 0;
+    }
+
+    @Override
+    public String toString() {
+        return "[" + Arrays.toString(u) + ", " + v + "]";
+    }
+}
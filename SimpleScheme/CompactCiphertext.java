@@ -0,0 +1,41 @@
+import java.util.Arrays;
+
+/**
+ * An encryption (c1, c2) of a block of l message coefficients under the compact encryption scheme of 'CompactParty',
+ * where c1 is a vector of dimension n and c2 a vector of dimension l.
+ */
+public class CompactCiphertext {
+    final long[] c1;
+    final long[] c2;
+
+    /**
+     * Constructs a CompactCiphertext object holding a given ciphertext.
+     * @param c1 the first part of the ciphertext, c1 = e1 · A + e2.
+     * @param c2 the second part of the ciphertext, c2 = e1 · P + e3 + encode(message).
+     */
+    public CompactCiphertext(long[] c1, long[] c2) {
+        this.c1 = c1;
+        this.c2 = c2;
+    }
+
+    /**
+     * Simple getter method for c1.
+     * @return Returns c1 = e1 · A + e2.
+     */
+    public long[] getC1() {
+        return c1;
+    }
+
+    /**
+     * Simple getter method for c2.
+     * @return Returns c2 = e1 · P + e3 + encode(message).
+     */
+    public long[] getC2() {
+        return c2;
+    }
+
+    @Override
+    public String toString() {
+        return "[" + Arrays.toString(c1) + ", " + Arrays.toString(c2) + "]";
+    }
+}
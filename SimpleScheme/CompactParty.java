@@ -0,0 +1,327 @@
+import java.util.InputMismatchException;
+import java.util.NoSuchElementException;
+
+/**
+ * A party of the compact LWE encryption scheme described in
+ * Better Key Sizes (and Attacks) for LWE-Based Encryption - Richard Lindner and Chris Peikert (https://eprint.iacr.org/2010/613.pdf)
+ * Compared to the scheme of 'Party' the public key is a square n × n matrix A - expanded from a seed - and an n × l matrix
+ * P = R1 - A · S, where the secret key S and R1 have small entries drawn from ψ_k. An encryption uses small vectors
+ * e1, e2 and e3 instead of a random subset of the rows, and carries l coefficients of 'bitsPerCoefficient' bits each,
+ * so the key is about log_2(q) times smaller and a ciphertext of n + l coefficients holds l · bitsPerCoefficient bits.
+ * The errors have the standard deviation ≈ 3.2 of the parameters of the paper; the modulus must be large enough for
+ * decryption to fail with negligible probability.
+ */
+public class CompactParty {
+    /**
+     * The number of standard deviations of the decryption error that must fit within half an encoding step.
+     */
+    private static final double TAIL_BOUND = 10.0;
+    /**
+     * The error parameter k of ψ_k - the variance (k - 1)/2 = 10.5 matches the Gaussian parameter s = 8 of the paper.
+     */
+    private static final int ERROR_PARAMETER = 22;
+
+    private final int n, l, bitsPerCoefficient, k;
+    private Modulus q;
+    private long delta;
+    private final RandomnessProvider randomness;
+    private SeededMatrix a;
+    /**
+     * The public matrix P and the secret matrix S, stored by columns - column j starts at index j · n.
+     */
+    private long[] p, s;
+
+    /**
+     Constructs a CompactParty object with a square public matrix, carrying one bit per coefficient.
+     * @param n is the dimension of the secret vectors and the number of bits per ciphertext.
+     * @param qBitLength is the bit length of the modulus of the scheme - must be in [3, 62].
+     */
+    public CompactParty(int n, int qBitLength){
+        this(n, qBitLength, n, 1);
+    }
+
+    /**
+     Constructs a CompactParty object.
+     * @param n is the dimension of the secret vectors.
+     * @param qBitLength is the bit length of the modulus of the scheme - must be in [3, 62].
+     * @param l is the number of message coefficients per ciphertext.
+     * @param bitsPerCoefficient is the number of message bits encoded in each coefficient.
+     */
+    public CompactParty(int n, int qBitLength, int l, int bitsPerCoefficient){
+        this(n, qBitLength, false, l, bitsPerCoefficient, RandomnessProvider.getDefault());
+    }
+
+    /**
+     Constructs a CompactParty object drawing its randomness from a given provider.
+     * @param n is the dimension of the secret vectors.
+     * @param qBitLength is the bit length of the prime modulus - must be in [3, 62] - or k if q = 2^k - must be in [2, 62].
+     * @param powerOfTwoModulus whether q = 2^qBitLength rather than a random prime of bit length qBitLength.
+     * @param l is the number of message coefficients per ciphertext.
+     * @param bitsPerCoefficient is the number of message bits encoded in each coefficient.
+     * @param randomness is the source of all randomness of the party - keys, moduli and encryptions.
+     */
+    public CompactParty(int n, int qBitLength, boolean powerOfTwoModulus, int l, int bitsPerCoefficient, RandomnessProvider randomness){
+        if (n < 1 || l < 1 || bitsPerCoefficient < 1 || bitsPerCoefficient >= qBitLength){
+            throw new IllegalArgumentException("Invalid sizes - n and l must be positive and a coefficient must hold fewer bits than q.");
+        }
+        this.n = n;
+        this.l = l;
+        this.bitsPerCoefficient = bitsPerCoefficient;
+        this.randomness = randomness;
+        this.q = Party.chooseModulus(qBitLength, powerOfTwoModulus, randomness);
+        this.delta = q.getQ() >>> bitsPerCoefficient;
+        this.k = errorParameter(n, delta, bitsPerCoefficient);
+    }
+
+    /**
+     * Checks that the decryption error e1 · R1 + e2 · S + e3 stays below half an encoding step - its variance is about
+     * 2n · σ^4 for the variance σ^2 = (k - 1)/2 of ψ_k. As Δ · m is off from m · q / 2^bitsPerCoefficient by
+     * m · (q mod 2^bitsPerCoefficient) / 2^bitsPerCoefficient < 2^bitsPerCoefficient, that much is kept free as well.
+     * @param n is the dimension of the secret vectors.
+     * @param delta is the encoding step Δ = ⌊q / 2^bitsPerCoefficient⌋.
+     * @param bitsPerCoefficient is the number of message bits encoded in each coefficient.
+     * @return Returns the error parameter k.
+     */
+    private static int errorParameter(int n, long delta, int bitsPerCoefficient){
+        double variance = (ERROR_PARAMETER - 1) / 2.0;
+        if (TAIL_BOUND * Math.sqrt(2.0 * n) * variance + Math.scalb(1.0, bitsPerCoefficient) >= delta / 2.0){
+            throw new IllegalArgumentException("The modulus is too small for the dimension and the number of bits per coefficient.");
+        }
+        return ERROR_PARAMETER;
+    }
+
+    /**
+     * Generates a key pair - the seed of A, the secret key S and P = R1 - A · S.
+     */
+    public void generateKeys(){
+        byte[] seed = new byte[ChaChaPrg.SEED_LENGTH];
+        randomness.nextBytes(seed);
+        a = new SeededMatrix(seed, n, q);
+        BinomialSampler sampler = new BinomialSampler(randomness.current());
+        s = new long[l * n];
+        sampler.fillCentered(s, 0, s.length, k);
+        q.reduce(s);
+        p = new long[l * n];
+        long[] row = new long[n];
+        long[] products = new long[l];
+        long[] r1 = new long[l];
+        for (int i = 0; i < n; i++){
+            a.expandRow(i, row, 0);
+            Kernels.matrixVector(s, 0, l, q.toMontgomery(row), n, q, products);
+            sampler.fillCentered(r1, 0, l, k);
+            for (int j = 0; j < l; j++){
+                p[j * n + i] = q.reduce(r1[j] - products[j]);
+            }
+        }
+    }
+
+    /**
+     * Emulates the retrieval of a public key.
+     * @param seed is the seed from which A is expanded.
+     * @param p is the matrix P, stored by columns - column j starts at index j · n.
+     * @param q is the modulus of the public key, which replaces the modulus of this party.
+     */
+    public void retrievePublicKey(byte[] seed, long[] p, long q){
+        if (seed.length != ChaChaPrg.SEED_LENGTH || p.length != l * n){
+            throw new InputMismatchException("The public key does not match the parameters of this party.");
+        }
+        Modulus modulus = new Modulus(q);
+        long step = q >>> bitsPerCoefficient;
+        errorParameter(n, step, bitsPerCoefficient);
+        this.q = modulus;
+        this.delta = step;
+        this.s = null;
+        this.a = new SeededMatrix(seed, n, modulus);
+        this.p = p.clone();
+    }
+
+    /**
+     * Encrypts every bit of a message, l · bitsPerCoefficient bits per ciphertext.
+     * Bit b of the message is bit (b mod 8) of message[b / 8], counting from the least significant bit; the bits of
+     * coefficient j of a ciphertext are read least significant first, and the last ciphertext is padded with zeros.
+     * @param message the bits to be encrypted, packed into bytes.
+     * @return Returns the ciphertexts (c1, c2).
+     */
+    public CompactCiphertext[] encryptBits(byte[] message){
+        int bitsPerCiphertext = l * bitsPerCoefficient;
+        CompactCiphertext[] ciphertexts = new CompactCiphertext[(message.length * 8 + bitsPerCiphertext - 1) / bitsPerCiphertext];
+        long[] coefficients = new long[l];
+        for (int c = 0; c < ciphertexts.length; c++){
+            for (int j = 0; j < l; j++){
+                long value = 0;
+                for (int t = 0; t < bitsPerCoefficient; t++){
+                    int bit = c * bitsPerCiphertext + j * bitsPerCoefficient + t;
+                    if (bit < message.length * 8){
+                        value |= (long) ((message[bit >>> 3] >>> (bit & 7)) & 1) << t;
+                    }
+                }
+                coefficients[j] = value;
+            }
+            ciphertexts[c] = encrypt(coefficients);
+        }
+        return ciphertexts;
+    }
+
+    /**
+     * Encrypts l message coefficients - c1 = e1 · A + e2 and c2 = e1 · P + e3 + ⌊q / 2^bitsPerCoefficient⌋ · message.
+     * @param message the coefficients, each in [0, 2^bitsPerCoefficient).
+     * @return Returns the encryption (c1, c2) of the message.
+     */
+    public CompactCiphertext encrypt(long[] message){
+        if (p == null){
+            throw new NoSuchElementException("No public key has been generated or retrieved.");
+        }
+        if (message.length != l){
+            throw new InputMismatchException("Invalid input for encryption - the message must have l coefficients.");
+        }
+        BinomialSampler sampler = new BinomialSampler(randomness.current());
+        long[] e1 = new long[n];
+        long[] c1 = new long[n];
+        long[] c2 = new long[l];
+        sampler.fillCentered(e1, 0, n, k);
+        sampler.fillCentered(c1, 0, n, k);
+        sampler.fillCentered(c2, 0, l, k);
+        q.reduce(e1);
+        q.reduce(c1);
+        long[] e1Montgomery = q.toMontgomery(e1);
+        long[] row = new long[n];
+        for (int i = 0; i < n; i++){
+            a.expandRow(i, row, 0);
+            for (int col = 0; col < n; col++){
+                c1[col] = q.add(c1[col], q.mulMontgomery(row[col], e1Montgomery[i]));
+            }
+        }
+        long[] products = new long[l];
+        Kernels.matrixVector(p, 0, l, e1Montgomery, n, q, products);
+        for (int j = 0; j < l; j++){
+            if (message[j] < 0 || message[j] >>> bitsPerCoefficient != 0){
+                throw new InputMismatchException("Invalid input for encryption - a coefficient must have at most bitsPerCoefficient bits.");
+            }
+            c2[j] = q.add(q.reduce(c2[j] + products[j]), q.reduce(delta * message[j]));
+        }
+        return new CompactCiphertext(c1, c2);
+    }
+
+    /**
+     * Decrypts l message coefficients - c1 · S + c2 = e1 · R1 + e2 · S + e3 + encode(message) is rounded to the
+     * nearest multiple of the encoding step.
+     * @param ciphertext the ciphertext (c1, c2).
+     * @return Returns the message coefficients.
+     */
+    public long[] decrypt(CompactCiphertext ciphertext){
+        if (s == null){
+            throw new NoSuchElementException("No secret key has been generated.");
+        }
+        if (ciphertext.c1.length != n || ciphertext.c2.length != l){
+            throw new InputMismatchException("Invalid ciphertext - c1 must have n and c2 must have l coefficients.");
+        }
+        long[] message = new long[l];
+        Kernels.matrixVector(s, 0, l, q.toMontgomery(ciphertext.c1), n, q, message);
+        long mask = (1L << bitsPerCoefficient) - 1;
+        for (int j = 0; j < l; j++){
+            message[j] = decode(q.add(message[j], ciphertext.c2[j])) & mask;
+        }
+        return message;
+    }
+
+    /**
+     * Rounds a coefficient x ∈ [0, q) to the nearest multiple of q / 2^bitsPerCoefficient - ⌊x · 2^bitsPerCoefficient / q⌉ -
+     * by long division one bit at a time, as x · 2^bitsPerCoefficient may not fit in a long.
+     * Rounding by Δ instead fails for a prime q, where q mod 2^bitsPerCoefficient leaves the top step short.
+     * @param x is the coefficient.
+     * @return Returns the rounded quotient, in [0, 2^bitsPerCoefficient].
+     */
+    private long decode(long x){
+        long modulus = q.getQ();
+        long quotient = 0;
+        for (int i = 0; i < bitsPerCoefficient; i++){
+            x <<= 1;
+            quotient <<= 1;
+            if (x >= modulus){
+                x -= modulus;
+                quotient |= 1;
+            }
+        }
+        return 2 * x >= modulus ? quotient + 1 : quotient;
+    }
+
+    /**
+     * Decrypts a batch of ciphertexts as produced by 'encryptBits'.
+     * The ciphertexts do not record the length of the message, so every whole byte they hold is returned - including
+     * whole bytes of the zero padding of the last ciphertext, see 'decryptToBits(CompactCiphertext[], int)'.
+     * @param ciphertexts the ciphertexts to decrypt.
+     * @return Returns the ⌊ciphertexts.length · l · bitsPerCoefficient / 8⌋ bytes encrypted, in the same order as
+     * 'encryptBits' expects them.
+     */
+    public byte[] decryptToBits(CompactCiphertext[] ciphertexts){
+        return decryptToBits(ciphertexts, (int) ((long) ciphertexts.length * l * bitsPerCoefficient / 8));
+    }
+
+    /**
+     * Decrypts a batch of ciphertexts as produced by 'encryptBits' for a message of a known length,
+     * dropping the padding of the last ciphertext.
+     * @param ciphertexts the ciphertexts to decrypt.
+     * @param messageLength the number of bytes of the message encrypted.
+     * @return Returns the message, packed into bytes in the same order as 'encryptBits' expects them.
+     */
+    public byte[] decryptToBits(CompactCiphertext[] ciphertexts, int messageLength){
+        int bitsPerCiphertext = l * bitsPerCoefficient;
+        if (messageLength < 0 || (long) messageLength * 8 > (long) ciphertexts.length * bitsPerCiphertext){
+            throw new InputMismatchException("Invalid message length - the ciphertexts hold at most "
+                    + (long) ciphertexts.length * bitsPerCiphertext / 8 + " bytes.");
+        }
+        byte[] message = new byte[messageLength];
+        for (int c = 0; c < ciphertexts.length; c++){
+            long[] coefficients = decrypt(ciphertexts[c]);
+            for (int j = 0; j < l; j++){
+                for (int t = 0; t < bitsPerCoefficient; t++){
+                    int bit = c * bitsPerCiphertext + j * bitsPerCoefficient + t;
+                    if (bit < message.length * 8){
+                        message[bit >>> 3] |= (byte) (((coefficients[j] >>> t) & 1) << (bit & 7));
+                    }
+                }
+            }
+        }
+        return message;
+    }
+
+    /**
+     * Simple getter method for the seed from which A is expanded.
+     * @return Returns the first part of a public key in its compressed form.
+     */
+    public byte[] getSeedOfPublicKey() {
+        return a.getSeed();
+    }
+
+    /**
+     * Simple getter method for P.
+     * @return Returns the second part of a public key, stored by columns - column j starts at index j · n.
+     */
+    public long[] getPOfPublicKey() {
+        return p.clone();
+    }
+
+    /**
+     * Simple getter method for the modulus.
+     * @return Returns q.
+     */
+    public long getQ() {
+        return q.getQ();
+    }
+
+    /**
+     * Simple getter method for the error parameter.
+     * @return Returns k - k defines the binomial distribution ψ_k.
+     */
+    public int getK() {
+        return k;
+    }
+
+    /**
+     * The number of message bits carried by one ciphertext.
+     * @return Returns l · bitsPerCoefficient.
+     */
+    public int getBitsPerCiphertext() {
+        return l * bitsPerCoefficient;
+    }
+}
@@ -0,0 +1,166 @@
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Decrypts with a secret key of the simple LWE encryption scheme, as described in
+ * On Lattices, Learning with Errors, Random Linear Codes, and Cryptography - Oded Regev (https://cims.nyu.edu/~regev/papers/qcrypto.pdf)
+ * A Decryptor object holds no state besides the immutable secret key, so one Decryptor can be shared by any
+ * number of threads without locking.
+ */
+public final class Decryptor {
+    /**
+     * Number of ciphertexts decrypted by a single task in 'decryptBatch' - a multiple of 64,
+     * so the tasks write disjoint words of the resulting bitset.
+     */
+    private static final int DECRYPT_BLOCK_SIZE = 1024;
+
+    private final LWESecretKey key;
+    private final int n;
+    private final Modulus q;
+    private final long[] secretKeyMontgomery;
+
+    /**
+     * Constructs a Decryptor object.
+     * @param key the secret key to decrypt with.
+     */
+    public Decryptor(LWESecretKey key) {
+        this.key = key;
+        this.n = key.n;
+        this.q = key.q;
+        this.secretKeyMontgomery = key.sMontgomery;
+    }
+
+    /**
+     * Simple getter method for the secret key.
+     * @return Returns the secret key decrypted with.
+     */
+    public LWESecretKey getSecretKey() {
+        return key;
+    }
+
+    /**
+     * Decrypts a batch of ciphertexts as produced by 'encryptBits'.
+     * @param ciphertexts the tuples (u, v) to decrypt.
+     * @return Returns the bits encrypted, packed into bytes in the same order as 'encryptBits' expects them.
+     */
+    public byte[] decryptToBits(Ciphertext[] ciphertexts){
+        byte[] message = new byte[(ciphertexts.length + 7) >>> 3];
+        for (int l = 0; l < ciphertexts.length; l++) {
+            message[l >>> 3] |= (byte) (decrypt(ciphertexts[l]) << (l & 7));
+        }
+        return message;
+    }
+
+    /**
+     * Decrypts a single ciphertext (u, v). 'vsu' = v - su, where s is the secret key.
+     * @param uv the ciphertext to decrypt.
+     * @return Returns the bit encrypted.
+     */
+    public int decrypt(Ciphertext uv){
+        if (uv.u.length != n){
+            throw new IllegalArgumentException("Invalid ciphertext - u must have the dimension n = " + n + " of the secret key.");
+        }
+        return toBit(q.sub(q.reduce(uv.v), Kernels.dotProduct(uv.u, 0, secretKeyMontgomery, n, q)));
+    }
+
+    /**
+     * Decrypts many ciphertexts at once, given as the matrix of their u's and the vector of their v's.
+     * The products u · s are computed by one blocked matrix-vector kernel, see 'Kernels.matrixVector'.
+     * @param u the u's of the ciphertexts, stored as a flat long[count · n]-array - entries must be in [0, q).
+     * @param v the v's of the ciphertexts.
+     * @return Returns the bits encrypted - bit l is bit (l mod 64) of the word l / 64.
+     */
+    public long[] decryptBatch(long[] u, long[] v){
+        return decryptBatch(u, v, 1);
+    }
+
+    /**
+     * Decrypts many ciphertexts at once, where blocks of the ciphertexts are decrypted by several threads.
+     * @param u the u's of the ciphertexts, stored as a flat long[count · n]-array - entries must be in [0, q).
+     * @param v the v's of the ciphertexts.
+     * @param parallelism the number of threads decrypting blocks of ciphertexts.
+     * @return Returns the bits encrypted - bit l is bit (l mod 64) of the word l / 64.
+     */
+    public long[] decryptBatch(long[] u, long[] v, int parallelism){
+        if (parallelism < 1){
+            throw new IllegalArgumentException("Invalid parallelism - at least one thread is needed.");
+        }
+        if (u.length != (long) v.length * n){
+            throw new IllegalArgumentException("Invalid batch - there must be n entries of u per entry of v.");
+        }
+        long[] bits = new long[(v.length + 63) >>> 6];
+        int blocks = (v.length + DECRYPT_BLOCK_SIZE - 1) / DECRYPT_BLOCK_SIZE;
+        if (parallelism == 1){
+            for (int block = 0; block < blocks; block++){
+                decryptBlock(u, v, bits, block);
+            }
+        } else {
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            try {
+                pool.invoke(new DecryptBlocks(u, v, bits, 0, blocks));
+            } finally {
+                pool.shutdown();
+            }
+        }
+        return bits;
+    }
+
+    /**
+     * Decrypts the ciphertexts of a block into their bits.
+     */
+    private void decryptBlock(long[] u, long[] v, long[] bits, int block){
+        int first = block * DECRYPT_BLOCK_SIZE;
+        int rows = Math.min(v.length, first + DECRYPT_BLOCK_SIZE) - first;
+        long[] su = new long[rows];
+        Kernels.matrixVector(u, first, rows, secretKeyMontgomery, n, q, su);
+        for (int l = first; l < first + rows; l++) {
+            bits[l >>> 6] |= (long) toBit(q.sub(q.reduce(v[l]), su[l - first])) << l;
+        }
+    }
+
+    /**
+     * Decrypts the ciphertexts of a range of blocks, splitting the range until a single block is left.
+     */
+    private class DecryptBlocks extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final long[] u, v, bits;
+        private final int from, to;
+
+        DecryptBlocks(long[] u, long[] v, long[] bits, int from, int to){
+            this.u = u;
+            this.v = v;
+            this.bits = bits;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute(){
+            if (to - from > 1){
+                int middle = (from + to) >>> 1;
+                invokeAll(new DecryptBlocks(u, v, bits, from, middle), new DecryptBlocks(u, v, bits, middle, to));
+                return;
+            }
+            decryptBlock(u, v, bits, from);
+        }
+    }
+
+    /**
+     * Maps v - su to the bit it encrypts.
+     * @param vsu v - su mod q.
+     * @return Returns 1 if vsu is closer to ⌈q/2⌉ than to 0, and 0 otherwise.
+     */
+    private int toBit(long vsu){
+        if (q.isPowerOfTwo()){
+            // vsu ∈ [q/4, 3q/4) exactly when vsu + q/4 mod q has its top bit set.
+            return (int) (q.reduce(vsu + (q.getQ() >>> 2)) >>> (Long.numberOfTrailingZeros(q.getQ()) - 1));
+        }
+        long qHalves = ((long) Math.ceil(((double) q.getQ()) / 2.0));
+        if (vsu >  qHalves / 2 && vsu < qHalves + qHalves / 2){
+            return 1;
+        } else {
+            return 0;
+        }
+    }
+}
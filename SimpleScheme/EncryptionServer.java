@@ -0,0 +1,190 @@
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.AsynchronousCloseException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * A local server hosting the key pair of a Party, so the simple LWE encryption scheme can be measured over a real
+ * connection - TCP on the loopback interface or a Unix domain socket.
+ * A client sends requests, each a single opcode byte possibly followed by an encoding in the format of 'WireFormat',
+ * and the server answers them in order; a client may send many requests before reading the answers.
+ * 'PUBLIC_KEY' is answered by the public key, and 'DECRYPT' followed by a batch of ciphertexts by their decryptions.
+ * Every connection is served by its own thread - a virtual thread when the runtime has them.
+ */
+public final class EncryptionServer implements AutoCloseable {
+    /**
+     * Requests the public key of the server.
+     */
+    public static final byte PUBLIC_KEY = 1;
+
+    /**
+     * Requests the decryption of the batch of ciphertexts following the opcode.
+     */
+    public static final byte DECRYPT = 2;
+
+    /**
+     * The largest number of coefficients - (n + 1) per ciphertext - of a batch accepted, so a client cannot make the
+     * server allocate more than 128 MiB per request.
+     */
+    static final int MAX_BATCH_COEFFICIENTS = 1 << 24;
+
+    private final ServerSocketChannel server;
+    private final SocketAddress address;
+    private final ExecutorService connections;
+    private final Decryptor decryptor;
+    private final ByteBuffer publicKey;
+    private final Thread acceptor;
+
+    /**
+     * Starts a server hosting the keys of a Party.
+     * @param party the Party whose keys are served - its Encryptor and Decryptor are taken when the server starts.
+     * @param address the address to listen on, see 'parseAddress'.
+     * @throws IOException if the server cannot listen on the address.
+     */
+    public EncryptionServer(Party party, SocketAddress address) throws IOException {
+        this.decryptor = party.getDecryptor();
+        this.publicKey = party.getEncryptor().getPublicKey().encode();
+        this.server = ServerSocketChannel.open(address instanceof UnixDomainSocketAddress
+                ? StandardProtocolFamily.UNIX : StandardProtocolFamily.INET);
+        server.bind(address);
+        this.address = server.getLocalAddress();
+        this.connections = newConnectionExecutor();
+        this.acceptor = new Thread(this::accept, "encryption-server");
+        acceptor.start();
+    }
+
+    /**
+     * Starts a server with fresh keys and runs until the process is killed.
+     * @param args the dimension n, the bit length of the modulus, optionally the address to listen on - a port
+     *             or the path of a Unix domain socket, 0 by default - and optionally 'true' for a power of two modulus.
+     * @throws IOException if the server cannot listen on the address.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: EncryptionServer <n> <bit length of q> [port | socket path] [true for q = 2^k]");
+            return;
+        }
+        Party party = new Party(Integer.parseInt(args[0]), Integer.parseInt(args[1]),
+                args.length > 3 && Boolean.parseBoolean(args[3]));
+        party.generateKeys(Runtime.getRuntime().availableProcessors());
+        EncryptionServer server = new EncryptionServer(party, parseAddress(args.length > 2 ? args[2] : "0"));
+        System.out.println("Listening on " + server.getAddress());
+    }
+
+    /**
+     * Parses the address of a local server.
+     * @param address a port on the loopback interface - 0 for any free port - or the path of a Unix domain socket.
+     * @return Returns the socket address.
+     */
+    public static SocketAddress parseAddress(String address) {
+        try {
+            return new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(address));
+        } catch (NumberFormatException e) {
+            return UnixDomainSocketAddress.of(address);
+        }
+    }
+
+    /**
+     * Simple getter method for the address listened on.
+     * @return Returns the address, with the port chosen if the server was started on port 0.
+     */
+    public SocketAddress getAddress() {
+        return address;
+    }
+
+    /**
+     * Stops accepting connections and closes the open ones.
+     * @throws IOException if the server socket cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        server.close();
+        connections.shutdownNow();
+        if (address instanceof UnixDomainSocketAddress) {
+            Files.deleteIfExists(((UnixDomainSocketAddress) address).getPath());
+        }
+    }
+
+    private void accept() {
+        try {
+            while (true) {
+                SocketChannel connection = server.accept();
+                connections.execute(() -> serve(connection));
+            }
+        } catch (ClosedChannelException e) {
+            // The server has been closed.
+        } catch (IOException e) {
+            System.err.println("The server stopped accepting connections: " + e.getMessage());
+        }
+    }
+
+    private void serve(SocketChannel connection) {
+        LWESecretKey key = decryptor.getSecretKey();
+        ByteBuffer opcode = ByteBuffer.allocate(1);
+        try (connection) {
+            while (true) {
+                opcode.clear();
+                if (connection.read(opcode) < 0) {
+                    return;
+                }
+                switch (opcode.get(0)) {
+                    case PUBLIC_KEY:
+                        write(connection, publicKey.duplicate());
+                        break;
+                    case DECRYPT:
+                        ByteBuffer encoding = WireFormat.readEncoding(connection, key.getN(), key.getQ(),
+                                MAX_BATCH_COEFFICIENTS / (key.getN() + 1), WireFormat.CIPHERTEXTS);
+                        if (encoding == null) {
+                            return;
+                        }
+                        WireFormat.Header header = WireFormat.readHeader(encoding, WireFormat.CIPHERTEXTS);
+                        long[] u = new long[Math.toIntExact((long) header.count * header.n)];
+                        long[] v = new long[header.count];
+                        WireFormat.decodeCiphertexts(header, encoding.slice().order(ByteOrder.LITTLE_ENDIAN), u, v);
+                        long[] bits = decryptor.decryptBatch(u, v);
+                        write(connection, WireFormat.encodeBits(bits, header.count, header.n, header.q));
+                        break;
+                    default:
+                        throw new IOException("Unknown opcode " + opcode.get(0) + ".");
+                }
+            }
+        } catch (AsynchronousCloseException e) {
+            // The server has been closed.
+        } catch (IOException e) {
+            System.err.println("Closed a connection: " + e.getMessage());
+        }
+    }
+
+    private static void write(SocketChannel connection, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            connection.write(buffer);
+        }
+    }
+
+    /**
+     * An executor with a thread per task - virtual threads when the runtime has them, platform threads otherwise.
+     * @return Returns the executor.
+     */
+    static ExecutorService newConnectionExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "encryption-connection");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+}
@@ -0,0 +1,206 @@
+import java.util.InputMismatchException;
+
+/**
+ * Encrypts under a public key of the simple LWE encryption scheme, as described in
+ * On Lattices, Learning with Errors, Random Linear Codes, and Cryptography - Oded Regev (https://cims.nyu.edu/~regev/papers/qcrypto.pdf)
+ * An Encryptor object holds no state besides the immutable public key; the buffers of an encryption belong to the
+ * calling thread, so one Encryptor can be shared by any number of threads without locking.
+ */
+public final class Encryptor {
+    /**
+     * Number of ciphertexts whose subset sums are accumulated together in 'encryptBits'.
+     * Each a_i of the public key is read once per block instead of once per bit.
+     */
+    private static final int BATCH_BLOCK_SIZE = 64;
+
+    /**
+     * Buffers reused by the encryptions of a thread - the selection vectors of a block and an expanded a_i.
+     */
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+    private final LWEPublicKey key;
+    private final int n;
+    private final Modulus q;
+    private final RandomnessProvider randomness;
+
+    /**
+     * Constructs an Encryptor object drawing its randomness from the default provider.
+     * @param key the public key to encrypt under.
+     */
+    public Encryptor(LWEPublicKey key) {
+        this(key, RandomnessProvider.getDefault());
+    }
+
+    /**
+     * Constructs an Encryptor object drawing its randomness from a given provider.
+     * @param key the public key to encrypt under.
+     * @param randomness the source of the random subsets S.
+     */
+    public Encryptor(LWEPublicKey key, RandomnessProvider randomness) {
+        this.key = key;
+        this.n = key.n;
+        this.q = key.q;
+        this.randomness = randomness;
+    }
+
+    /**
+     * Simple getter method for the public key.
+     * @return Returns the public key encrypted under.
+     */
+    public LWEPublicKey getPublicKey() {
+        return key;
+    }
+
+    /**
+     * Encrypts a bit into a new ciphertext.
+     * @param w is the bit to be encrypted.
+     * @return Returns the encryption (u, v) of w.
+     */
+    public Ciphertext encryptBit(int w) {
+        Ciphertext ciphertext = new Ciphertext(n);
+        encryptBit(w, ciphertext);
+        return ciphertext;
+    }
+
+    /**
+     * Encrypts a bit into a caller-supplied ciphertext without allocating.
+     * The random subset S is drawn as m bits into a buffer of the calling thread, and the a_i's of S are added
+     * to u in place.
+     * @param w is the bit to be encrypted.
+     * @param ciphertext the ciphertext to overwrite with the encryption of w.
+     */
+    public void encryptBit(int w, Ciphertext ciphertext){
+        if (w < 0 || w > 1){
+            throw new InputMismatchException("Invalid input for encryption - the input must be a bit, {0,1}.");
+        }
+        checkLength(ciphertext);
+        Scratch scratch = SCRATCH.get().ensure(key.m, n);
+        long[] selection = scratch.selections[0];
+        randomness.fillBits(selection, key.m);
+        ciphertext.clear();
+        long budget = q.getLazyBudget();
+        long pending = 0;
+        for (int word = 0; word < selection.length; word++) {
+            for (long bits = selection[word]; bits != 0; bits &= bits - 1) {
+                int i = (word << 6) + Long.numberOfTrailingZeros(bits);
+                if (key.a == null) {
+                    key.matrix.expandRow(i, scratch.row, 0);
+                    Kernels.addRow(ciphertext.u, scratch.row, 0, n);
+                } else {
+                    Kernels.addRow(ciphertext.u, key.a, i * n, n);
+                }
+                ciphertext.v += key.b[i];
+                if (++pending == budget) {
+                    q.reduce(ciphertext.u);
+                    ciphertext.v = q.reduce(ciphertext.v);
+                    pending = 0;
+                }
+            }
+        }
+        q.reduce(ciphertext.u);
+        ciphertext.v = q.add(q.reduce(ciphertext.v), ((long) Math.ceil(((double) q.getQ()) / 2.0) * w));
+    }
+
+    /**
+     * Encrypts every bit of a message in a single pass over the public key.
+     * Bit l of the message is bit (l mod 8) of message[l / 8], counting from the least significant bit.
+     * @param message the bits to be encrypted, packed into bytes.
+     * @return Returns a ciphertext (u, v) per bit of the message.
+     */
+    public Ciphertext[] encryptBits(byte[] message){
+        Ciphertext[] ciphertexts = new Ciphertext[message.length * 8];
+        for (int l = 0; l < ciphertexts.length; l++) {
+            ciphertexts[l] = new Ciphertext(n);
+        }
+        encryptBits(message, ciphertexts);
+        return ciphertexts;
+    }
+
+    /**
+     * Encrypts every bit of a message in a single pass over the public key, into caller-supplied ciphertexts.
+     * The random subsets S of all the bits are drawn at once as an m-bit selection vector per bit, and the sums
+     * ∑a_i and ∑b_i for i ∈ S are computed as the product of the selection matrix and the public key,
+     * one block of ciphertexts at a time.
+     * @param message the bits to be encrypted, packed into bytes.
+     * @param ciphertexts the ciphertexts to overwrite - one per bit of the message.
+     */
+    public void encryptBits(byte[] message, Ciphertext[] ciphertexts){
+        int numberOfBits = message.length * 8;
+        if (ciphertexts.length < numberOfBits){
+            throw new IllegalArgumentException("Too few ciphertexts - one is needed per bit of the message.");
+        }
+        for (int l = 0; l < numberOfBits; l++) {
+            checkLength(ciphertexts[l]);
+        }
+        Scratch scratch = SCRATCH.get().ensure(key.m, n);
+        long qHalves = (long) Math.ceil(((double) q.getQ()) / 2.0);
+        long budget = q.getLazyBudget();
+        for (int start = 0; start < numberOfBits; start += BATCH_BLOCK_SIZE) {
+            int size = Math.min(BATCH_BLOCK_SIZE, numberOfBits - start);
+            long[][] selections = scratch.selections;
+            for (int c = 0; c < size; c++) {
+                randomness.fillBits(selections[c], key.m);
+                ciphertexts[start + c].clear();
+            }
+            long pending = 0;
+            for (int i = 0; i < key.m; i++) {
+                long[] row = key.a;
+                int offset = i * n;
+                if (key.a == null) {
+                    key.matrix.expandRow(i, scratch.row, 0);
+                    row = scratch.row;
+                    offset = 0;
+                }
+                int word = i >>> 6;
+                long mask = 1L << i;
+                for (int c = 0; c < size; c++) {
+                    if ((selections[c][word] & mask) != 0) {
+                        Ciphertext ciphertext = ciphertexts[start + c];
+                        Kernels.addRow(ciphertext.u, row, offset, n);
+                        ciphertext.v += key.b[i];
+                    }
+                }
+                if (++pending == budget) {
+                    for (int c = 0; c < size; c++) {
+                        q.reduce(ciphertexts[start + c].u);
+                        ciphertexts[start + c].v = q.reduce(ciphertexts[start + c].v);
+                    }
+                    pending = 0;
+                }
+            }
+            for (int c = 0; c < size; c++) {
+                int l = start + c;
+                int w = (message[l >>> 3] >>> (l & 7)) & 1;
+                Ciphertext ciphertext = ciphertexts[l];
+                q.reduce(ciphertext.u);
+                ciphertext.v = q.add(q.reduce(ciphertext.v), qHalves * w);
+            }
+        }
+    }
+
+    private void checkLength(Ciphertext ciphertext) {
+        if (ciphertext.u.length != n) {
+            throw new IllegalArgumentException("Invalid ciphertext - u must have the dimension n = " + n + " of the public key.");
+        }
+    }
+
+    /**
+     * Buffers of a thread, grown to the largest dimensions they have been used with - never shrunk, as 'fillBits'
+     * clears the words of a selection vector beyond m.
+     */
+    private static final class Scratch {
+        long[][] selections = new long[BATCH_BLOCK_SIZE][0];
+        long[] row = new long[0];
+
+        Scratch ensure(int m, int n) {
+            int words = (m + 63) >>> 6;
+            if (selections[0].length < words) {
+                selections = new long[BATCH_BLOCK_SIZE][words];
+            }
+            if (row.length < n) {
+                row = new long[n];
+            }
+            return this;
+        }
+    }
+}
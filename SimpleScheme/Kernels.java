@@ -0,0 +1,117 @@
+/**
+ * The inner loops of the simple LWE encryption scheme, operating on vectors stored in flat row-major arrays.
+ * A matrix with m rows of dimension n is stored as a single long[m · n]-array, where row i starts at offset i · n.
+ * The row accumulation is unrolled by four, which lets the JIT compiler vectorise the additions.
+ */
+final class Kernels {
+
+    private Kernels() {
+    }
+
+    /**
+     * Computes the dot product of a row of a flat matrix and a vector modulo q.
+     * The products are reduced with Montgomery reduction and their sum is only reduced when it could overflow.
+     * For a power of two modulus the products and their sum simply wrap around and are masked once.
+     * @param x the flat matrix holding the first vector - entries must be in [0, q).
+     * @param offset the offset of the first vector in 'x'.
+     * @param sMontgomery the second vector in Montgomery form, see 'Modulus.toMontgomery'.
+     * @param n the dimension of the vectors.
+     * @param q the modulus.
+     * @return Returns ∑x[offset + l] · s[l] mod q for l = [0, n)
+     */
+    static long dotProduct(long[] x, int offset, long[] sMontgomery, int n, Modulus q) {
+        if (q.isPowerOfTwo()) {
+            long sum = 0;
+            for (int l = 0; l < n; l++) {
+                sum += x[offset + l] * sMontgomery[l];
+            }
+            return q.reduce(sum);
+        }
+        long budget = q.getLazyBudget();
+        long sum = 0;
+        long pending = 0;
+        for (int l = 0; l < n; l++) {
+            sum += q.mulMontgomery(x[offset + l], sMontgomery[l]);
+            if (++pending == budget) {
+                sum = q.reduce(sum);
+                pending = 0;
+            }
+        }
+        return q.reduce(sum);
+    }
+
+    /**
+     * Computes the product of a block of rows of a flat matrix and a vector modulo q.
+     * Four rows are processed together, so every entry of the vector is loaded once per four rows.
+     * @param x the flat matrix - entries must be in [0, q).
+     * @param first the index of the first row of the block.
+     * @param rows the number of rows of the block.
+     * @param sMontgomery the vector in Montgomery form, see 'Modulus.toMontgomery'.
+     * @param n the dimension of the rows.
+     * @param q the modulus.
+     * @param dst the array to store the products in - the product of row 'first + i' is stored at dst[i].
+     */
+    static void matrixVector(long[] x, int first, int rows, long[] sMontgomery, int n, Modulus q, long[] dst) {
+        int i = first;
+        int end = first + rows;
+        long budget = q.getLazyBudget();
+        for (; i + 3 < end; i += 4) {
+            int o0 = i * n, o1 = o0 + n, o2 = o1 + n, o3 = o2 + n;
+            long sum0 = 0, sum1 = 0, sum2 = 0, sum3 = 0;
+            if (q.isPowerOfTwo()) {
+                for (int l = 0; l < n; l++) {
+                    long s = sMontgomery[l];
+                    sum0 += x[o0 + l] * s;
+                    sum1 += x[o1 + l] * s;
+                    sum2 += x[o2 + l] * s;
+                    sum3 += x[o3 + l] * s;
+                }
+            } else {
+                long pending = 0;
+                for (int l = 0; l < n; l++) {
+                    long s = sMontgomery[l];
+                    sum0 += q.mulMontgomery(x[o0 + l], s);
+                    sum1 += q.mulMontgomery(x[o1 + l], s);
+                    sum2 += q.mulMontgomery(x[o2 + l], s);
+                    sum3 += q.mulMontgomery(x[o3 + l], s);
+                    if (++pending == budget) {
+                        sum0 = q.reduce(sum0);
+                        sum1 = q.reduce(sum1);
+                        sum2 = q.reduce(sum2);
+                        sum3 = q.reduce(sum3);
+                        pending = 0;
+                    }
+                }
+            }
+            dst[i - first] = q.reduce(sum0);
+            dst[i - first + 1] = q.reduce(sum1);
+            dst[i - first + 2] = q.reduce(sum2);
+            dst[i - first + 3] = q.reduce(sum3);
+        }
+        for (; i < end; i++) {
+            dst[i - first] = dotProduct(x, i * n, sMontgomery, n, q);
+        }
+    }
+
+    /**
+     * Adds a row of a flat matrix to an accumulator in place without reducing.
+     * The caller must reduce the accumulator, e.g. with 'Modulus.reduce', before more than
+     * 'Modulus.getLazyBudget' rows have been added to it.
+     * @param acc the accumulator, updated to acc + x[offset..offset + n).
+     * @param x the flat matrix holding the row.
+     * @param offset the offset of the row in 'x'.
+     * @param n the dimension of the row.
+     */
+    static void addRow(long[] acc, long[] x, int offset, int n) {
+        int l = 0;
+        for (; l + 3 < n; l += 4) {
+            acc[l] += x[offset + l];
+            acc[l + 1] += x[offset + l + 1];
+            acc[l + 2] += x[offset + l + 2];
+            acc[l + 3] += x[offset + l + 3];
+        }
+        for (; l < n; l++) {
+            acc[l] += x[offset + l];
+        }
+    }
+}
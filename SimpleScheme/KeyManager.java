@@ -0,0 +1,302 @@
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Generates key pairs of the simple LWE encryption scheme off the request path.
+ * Key pairs are generated per parameter profile, for which the KeyManager chooses the modulus of every key pair itself,
+ * so all parties constructed with the same profile share the cached key pair and the pools.
+ * A shared key pair per parameter set is generated once, when it is first asked for, and kept in a bounded cache
+ * that evicts the least recently used parameter set - a failed generation is not cached, so the next call retries it.
+ * Fresh key pairs are generated ahead of time in the background, a fixed number per parameter set, so taking one
+ * does not wait for key generation. The pools are bounded in the same way, by the number of parameter sets.
+ */
+public final class KeyManager implements AutoCloseable {
+    private final int capacity, poolSize;
+    private final RandomnessProvider randomness;
+    private final ExecutorService generators;
+    private final Map<Spec, CompletableFuture<KeyPair>> cache;
+    private final Map<Spec, Queue<CompletableFuture<KeyPair>>> pools;
+    private final Set<CompletableFuture<KeyPair>> pending = new HashSet<>();
+    private boolean closed;
+
+    /**
+     * Constructs a KeyManager object drawing its randomness from the default provider.
+     * @param capacity the number of parameter sets whose shared key pair is cached, and whose fresh key pairs are pooled.
+     * @param poolSize the number of fresh key pairs generated ahead of time per parameter set.
+     * @param threads the number of threads generating key pairs in the background.
+     */
+    public KeyManager(int capacity, int poolSize, int threads) {
+        this(capacity, poolSize, threads, RandomnessProvider.getDefault());
+    }
+
+    /**
+     * Constructs a KeyManager object drawing its randomness from a given provider.
+     * @param capacity the number of parameter sets whose shared key pair is cached, and whose fresh key pairs are pooled.
+     * @param poolSize the number of fresh key pairs generated ahead of time per parameter set.
+     * @param threads the number of threads generating key pairs in the background.
+     * @param randomness the source of randomness of the keys.
+     */
+    public KeyManager(int capacity, int poolSize, int threads, RandomnessProvider randomness) {
+        if (capacity < 1 || poolSize < 0 || threads < 1) {
+            throw new IllegalArgumentException("Invalid sizes - the capacity and the number of threads must be positive.");
+        }
+        this.capacity = capacity;
+        this.poolSize = poolSize;
+        this.randomness = randomness;
+        this.generators = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "key-generation");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Spec, CompletableFuture<KeyPair>> eldest) {
+                return size() > KeyManager.this.capacity;
+            }
+        };
+        this.pools = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Spec, Queue<CompletableFuture<KeyPair>>> eldest) {
+                return size() > KeyManager.this.capacity;
+            }
+        };
+    }
+
+    /**
+     * The shared key pair of a parameter set, generated on the first call and cached afterwards.
+     * Concurrent first calls wait for the same generation; if it fails, they all fail and the next call retries it.
+     * @param spec the parameter set.
+     * @return Returns the key pair.
+     * @throws IllegalStateException if the KeyManager is closed.
+     */
+    public KeyPair get(Spec spec) {
+        checkOpen();
+        CompletableFuture<KeyPair> keyPair;
+        boolean generating = false;
+        synchronized (cache) {
+            keyPair = cache.get(spec);
+            if (keyPair == null) {
+                keyPair = generateAsync(spec);
+                cache.put(spec, keyPair);
+                generating = true;
+            }
+        }
+        if (generating) {
+            CompletableFuture<KeyPair> generated = keyPair;
+            generated.whenComplete((result, failure) -> {
+                if (failure != null) {
+                    synchronized (cache) {
+                        cache.remove(spec, generated);
+                    }
+                }
+            });
+        }
+        return join(keyPair);
+    }
+
+    /**
+     * Starts generating fresh key pairs of a parameter set in the background, until 'poolSize' are pending or ready.
+     * @param spec the parameter set.
+     * @throws IllegalStateException if the KeyManager is closed.
+     */
+    public void pregenerate(Spec spec) {
+        checkOpen();
+        Queue<CompletableFuture<KeyPair>> pool;
+        synchronized (pools) {
+            pool = pools.computeIfAbsent(spec, s -> new ConcurrentLinkedQueue<>());
+        }
+        synchronized (pool) {
+            while (pool.size() < poolSize) {
+                pool.add(generateAsync(spec));
+            }
+        }
+    }
+
+    /**
+     * Takes a fresh key pair of a parameter set, which is given to no one else, and starts generating its replacement.
+     * If 'pregenerate' was called in time the key pair is ready and is returned without waiting.
+     * @param spec the parameter set.
+     * @return Returns the key pair.
+     * @throws IllegalStateException if the KeyManager is closed.
+     */
+    public KeyPair take(Spec spec) {
+        checkOpen();
+        Queue<CompletableFuture<KeyPair>> pool;
+        synchronized (pools) {
+            pool = pools.get(spec);
+        }
+        CompletableFuture<KeyPair> keyPair = pool == null ? null : pool.poll();
+        if (pool != null) {
+            pregenerate(spec);
+        }
+        return keyPair == null ? generate(spec) : join(keyPair);
+    }
+
+    /**
+     * Stops the background generation. Key pairs not yet generated are cancelled, so callers waiting for them
+     * fail with a CancellationException rather than waiting forever, and later calls are rejected.
+     */
+    @Override
+    public void close() {
+        List<CompletableFuture<KeyPair>> cancelled;
+        synchronized (pending) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            cancelled = new ArrayList<>(pending);
+        }
+        generators.shutdownNow();
+        for (CompletableFuture<KeyPair> keyPair : cancelled) {
+            keyPair.cancel(false);
+        }
+    }
+
+    private void checkOpen() {
+        synchronized (pending) {
+            if (closed) {
+                throw new IllegalStateException("The KeyManager is closed.");
+            }
+        }
+    }
+
+    private CompletableFuture<KeyPair> generateAsync(Spec spec) {
+        CompletableFuture<KeyPair> keyPair;
+        synchronized (pending) {
+            if (closed) {
+                throw new IllegalStateException("The KeyManager is closed.");
+            }
+            keyPair = CompletableFuture.supplyAsync(() -> generate(spec), generators);
+            pending.add(keyPair);
+        }
+        keyPair.whenComplete((result, failure) -> {
+            synchronized (pending) {
+                pending.remove(keyPair);
+            }
+        });
+        return keyPair;
+    }
+
+    private KeyPair generate(Spec spec) {
+        Modulus q = Party.chooseModulus(spec.qBitLength, spec.powerOfTwoModulus, randomness);
+        SimpleKeyPair keyPair = new SimpleKeyPair(spec.n, spec.m, q, spec.k, randomness);
+        return new KeyPair(new LWESecretKey(keyPair.getSecretKey(), q),
+                LWEPublicKey.fromSeed(keyPair.getSeedPublicKey(), keyPair.getB_iPublicKey(), spec.n, q.getQ()));
+    }
+
+    private static KeyPair join(CompletableFuture<KeyPair> keyPair) {
+        try {
+            return keyPair.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e;
+        } catch (CancellationException e) {
+            throw new IllegalStateException("The KeyManager was closed before the key pair was generated.", e);
+        }
+    }
+
+    /**
+     * The parameter profile a key pair is generated for - the dimension n, the bit length of the modulus q and
+     * whether it is a power of two, the number of "equations" m and the error parameter k.
+     * The modulus itself is chosen for each key pair, as 'Party' does.
+     */
+    public static final class Spec {
+        final int n, qBitLength, m, k;
+        final boolean powerOfTwoModulus;
+
+        /**
+         * Constructs a Spec object.
+         * @param n is the dimension of the secret key.
+         * @param qBitLength is the bit length of the prime modulus - must be in [3, 62] - or k if q = 2^k - must be in [2, 62].
+         * @param powerOfTwoModulus whether q = 2^qBitLength rather than a random prime of bit length qBitLength.
+         * @param m is the number of "equations".
+         * @param k is the error parameter.
+         */
+        public Spec(int n, int qBitLength, boolean powerOfTwoModulus, int m, int k) {
+            if (n < 1 || m < 1) {
+                throw new IllegalArgumentException("Invalid parameters - n and m must be positive.");
+            }
+            Party.checkModulusBitLength(qBitLength, powerOfTwoModulus);
+            this.n = n;
+            this.qBitLength = qBitLength;
+            this.powerOfTwoModulus = powerOfTwoModulus;
+            this.m = m;
+            this.k = k;
+        }
+
+        /**
+         * Constructs a Spec object from a parameter profile, see 'ParameterPlanner'.
+         * @param parameters the dimension, modulus, number of "equations" and error parameter to use.
+         */
+        public Spec(Parameters parameters) {
+            this(parameters.getN(), parameters.getQBitLength(), parameters.isPowerOfTwoModulus(), parameters.getM(), parameters.getK());
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Spec)) {
+                return false;
+            }
+            Spec other = (Spec) o;
+            return n == other.n && qBitLength == other.qBitLength && powerOfTwoModulus == other.powerOfTwoModulus
+                    && m == other.m && k == other.k;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(n, qBitLength, powerOfTwoModulus, m, k);
+        }
+
+        @Override
+        public String toString() {
+            return "n = " + n + ", q = " + (powerOfTwoModulus ? "2^" + qBitLength : qBitLength + "-bit prime")
+                    + ", m = " + m + ", k = " + k;
+        }
+    }
+
+    /**
+     * A generated key pair.
+     */
+    public static final class KeyPair {
+        private final LWESecretKey secretKey;
+        private final LWEPublicKey publicKey;
+
+        KeyPair(LWESecretKey secretKey, LWEPublicKey publicKey) {
+            this.secretKey = secretKey;
+            this.publicKey = publicKey;
+        }
+
+        /**
+         * Simple getter method for the secret key.
+         * @return Returns the secret key.
+         */
+        public LWESecretKey getSecretKey() {
+            return secretKey;
+        }
+
+        /**
+         * Simple getter method for the public key.
+         * @return Returns the public key.
+         */
+        public LWEPublicKey getPublicKey() {
+            return publicKey;
+        }
+    }
+}
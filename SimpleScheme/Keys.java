@@ -1,20 +1,24 @@
-import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 class SimpleSecretKey {
     private long[] secretKey;
     private final int n;
-    private final long q;
+    private final Modulus q;
 
-    private SecureRandom rand = new SecureRandom();
+    private final RandomnessProvider randomness;
 
     /**
      * Constructs a SimpleSecretKey object for the simple LWE encryption scheme.
      * @param n is the dimension of the secret key.
      * @param q is the modulus of the scheme.
+     * @param randomness is the source of randomness.
      */
-    public SimpleSecretKey(int n, long q){
+    public SimpleSecretKey(int n, Modulus q, RandomnessProvider randomness){
         this.n = n;
         this.q = q;
+        this.randomness = randomness;
         secretKey = new long[n];
     }
 
@@ -22,9 +26,7 @@ class SimpleSecretKey {
      * Generates a secret key based on the parameters chosen at initialisation.
      */
     public void genSecretKey(){
-        for (int i = 0; i < n; i++){
-            secretKey[i] = mod(rand.nextLong(), q);
-        }
+        randomness.fillLongsMod(secretKey, 0, n, q);
     }
 
     /**
@@ -34,186 +36,297 @@ class SimpleSecretKey {
     public long[] getSecretKey() {
         return secretKey;
     }
+}
 
+class SimplePublicKey {
     /**
-     * Simple method used to compute modulus.
-     * @param x a number.
-     * @param y the modulus.
-     * @return Returns x mod y.
+     * The number of rows whose errors are drawn from the same stream - fixed such that the key only depends on the seed.
      */
-    private long mod(long x, long y) {
-        long result = x % y;
-        if (result < 0){
-            return result + y;
-        } else {
-            return result;
-        }
-    }
-}
+    private static final int ROWS_PER_BLOCK = 256;
+    private static final int SEED_DOMAIN = 0x53;
+    private static final int ERROR_DOMAIN = 0x45;
 
-class SimplePublicKey {
     private final int k;
-    private final long q;
+    private final Modulus q;
     private int m, n;
-    private long[][] a;
+    private SeededMatrix a;
     private long[] b;
+    private byte[] masterSeed;
     private final SimpleSecretKey secretKey;
-    private SecureRandom rand = new SecureRandom();
+    private final RandomnessProvider randomness;
 
     /**
      * Constructs a SimplePublicKey object for the simple LWE encryption scheme.
      * @param secretKey is the secret key, s, used in a_i · s + e_i.
      * @param m is the number of "equations".
      * @param k is the error parameter - k defines the binomial distribution ψ_k.
+     * @param randomness is the source of the master seeds.
      */
-    SimplePublicKey(SimpleSecretKey secretKey, int n, int m, long q, int k){
+    SimplePublicKey(SimpleSecretKey secretKey, int n, int m, Modulus q, int k, RandomnessProvider randomness){
         this.secretKey = secretKey;
+        this.randomness = randomness;
         this.q = q;
         this.m = m;
         this.k = k;
         this.n = n;
-        this.a = new long[m][n];
-        this.b = new long[m];
     }
 
     /**
      * Generates a public key based on the parameters chosen at initialisation.
+     * The a_i's are expanded from a fresh random seed one row at a time and are not stored.
      */
     public void genPublicKey(){
-        for (int i = 0; i < m; i++){
-            for (int j = 0; j < n; j++){
-                a[i][j] = mod(rand.nextLong(), q);
-            }
-            b[i] = mod((dotProduct(a[i], secretKey.getSecretKey()) + getBinomial(k)), q);
-        }
+        genPublicKey(1);
     }
 
     /**
-     * Simple method used to compute modulus.
-     * @param x a number.
-     * @param y the modulus.
-     * @return Returns x mod y.
+     * Generates a public key from a fresh random master seed, using several threads.
+     * @param parallelism the number of threads generating rows.
      */
-    private long mod(long x, long y) {
-        long result = x % y;
-        if (result < 0){
-            return result + y;
-        } else {
-            return result;
+    public void genPublicKey(int parallelism){
+        byte[] masterSeed = new byte[ChaChaPrg.SEED_LENGTH];
+        randomness.nextBytes(masterSeed);
+        genPublicKey(masterSeed, parallelism);
+    }
+
+    /**
+     * Generates a public key from a master seed, splitting the rows into blocks generated in a fork-join pool.
+     * The seed of the a_i's and the stream of errors of each block of rows are derived from the master seed,
+     * so the same master seed and secret key give the same public key for any parallelism.
+     * The master seed determines the errors and must be kept as secret as the secret key.
+     * @param masterSeed the 32-byte master seed.
+     * @param parallelism the number of threads generating rows.
+     */
+    public void genPublicKey(byte[] masterSeed, int parallelism){
+        if (parallelism < 1){
+            throw new IllegalArgumentException("Invalid parallelism - at least one thread is needed.");
         }
+        byte[] seed = new byte[ChaChaPrg.SEED_LENGTH];
+        new ChaChaPrg(masterSeed, SEED_DOMAIN, 0).nextBytes(seed);
+        this.masterSeed = masterSeed.clone();
+        a = new SeededMatrix(seed, n, q);
+        b = new long[m];
+        genRows(0, parallelism);
     }
 
     /**
-     * Simple getter method for the a_i's of the public key.
-     * @return Returns the first part of a public key defined by a long[][]-array.
+     * Changes the number of "equations" of a generated public key without regenerating the rows it keeps.
+     * Shrinking drops the last rows; growing only computes the new rows, which are the rows a public key generated
+     * from the same master seed with the new number of equations would have - so the seed of the a_i's stays the same.
+     * @param m the new number of equations.
+     * @param parallelism the number of threads generating the new rows.
      */
-    public long[][] getA() {
-        return a;
+    public void resize(int m, int parallelism){
+        if (masterSeed == null){
+            throw new IllegalStateException("The public key has not been generated yet.");
+        }
+        if (m < 1 || parallelism < 1){
+            throw new IllegalArgumentException("Invalid sizes - at least one equation and one thread are needed.");
+        }
+        int oldM = this.m;
+        this.m = m;
+        b = Arrays.copyOf(b, m);
+        if (m > oldM){
+            genRows(oldM, parallelism);
+        }
     }
 
     /**
-     * Simple getter method for the b_i's of the public key.
-     * @return Returns the second part of a public key defined by a long[]-array.
+     * Computes the rows from 'firstRow' up to m, block after block on the calling thread if 'parallelism' is 1,
+     * or in blocks generated in a fork-join pool of 'parallelism' threads.
      */
-    public long[] getB() {
-        return b;
+    private void genRows(int firstRow, int parallelism){
+        long[] s = q.toMontgomery(secretKey.getSecretKey());
+        int fromBlock = firstRow / ROWS_PER_BLOCK;
+        int toBlock = (m + ROWS_PER_BLOCK - 1) / ROWS_PER_BLOCK;
+        if (parallelism == 1){
+            for (int block = fromBlock; block < toBlock; block++){
+                genBlock(masterSeed, s, firstRow, block);
+            }
+        } else {
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            try {
+                pool.invoke(new RowBlocks(masterSeed, s, firstRow, fromBlock, toBlock));
+            } finally {
+                pool.shutdown();
+            }
+        }
     }
 
     /**
-     * A simple method for computing the dot product of two vectors.
-     * @param a_i the first vector in the dot product - must be defined as an array of 'longs'.
-     * @param s the second vector in the dot product - must be defined as an array of 'longs'.
-     * @return Returns ∑a_i[l] · s[l] for l = [0, dim(a_i)]
+     * Computes b_i = a_i · s + e_i for the rows of a block. Rows before 'firstRow' are kept - their errors are still drawn,
+     * such that the errors of the later rows of the block do not depend on where the computation started.
      */
-    private static long dotProduct(long[] a_i, long[] s) {
-        long sum = 0;
-        for (int i = 0; i < a_i.length; i++) {
-            sum = a_i[i] * s[i];
+    private void genBlock(byte[] masterSeed, long[] s, int firstRow, int block){
+        int first = block * ROWS_PER_BLOCK;
+        int rows = Math.min(m, first + ROWS_PER_BLOCK) - first;
+        long[] e = new long[rows];
+        new BinomialSampler(new ChaChaPrg(masterSeed, ERROR_DOMAIN, block)).fillCentered(e, 0, rows, k);
+        long[] a_i = new long[n];
+        for (int i = Math.max(0, firstRow - first); i < rows; i++){
+            a.expandRow(first + i, a_i, 0);
+            b[first + i] = q.reduce(Kernels.dotProduct(a_i, 0, s, n, q) + e[i]);
         }
-        return sum;
     }
 
     /**
-     * Samples from a centered binomial distribution - mean = 0, variance k/2.
-     * Is based on approached described in 'Post-quantum key exchange – a new hope∗' (https://eprint.iacr.org/2015/1092.pdf)
-     * @param k defines the sample space.
-     * @return Returns a sample.
+     * Computes the rows of a range of blocks, splitting the range until a single block is left, see 'genBlock'.
      */
-    private int getBinomial(int k) {
-        int sum = 0;
-        for (int i = 0; i < k - 1; i++){
-            int b_0 = rand.nextInt(2);
-            int b_1 = rand.nextInt(2);
-            sum += b_0 - b_1;
+    private class RowBlocks extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final byte[] masterSeed;
+        private final long[] s;
+        private final int firstRow, from, to;
+
+        RowBlocks(byte[] masterSeed, long[] s, int firstRow, int from, int to){
+            this.masterSeed = masterSeed;
+            this.s = s;
+            this.firstRow = firstRow;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute(){
+            if (to - from > 1){
+                int middle = (from + to) >>> 1;
+                invokeAll(new RowBlocks(masterSeed, s, firstRow, from, middle), new RowBlocks(masterSeed, s, firstRow, middle, to));
+                return;
+            }
+            genBlock(masterSeed, s, firstRow, from);
         }
-        return sum;
     }
 
     /**
-     * Simple coin-flipping algorithm to sample from a binomial distribution.
+     * Simple getter method for the seed from which the a_i's of the public key are expanded.
+     * @return Returns the first part of a public key in its compressed form.
+     */
+    public byte[] getSeed() {
+        return a.getSeed();
+    }
+
+    /**
+     * Expands all the a_i's of the public key - only needed when the whole matrix has to be shown or kept in memory.
+     * @return Returns the first part of a public key defined by a flat long[m · n]-array - a_i starts at index i · n.
+     */
+    public long[] getA() {
+        return a.expand(m);
+    }
+
+    /**
+     * Simple getter method for the b_i's of the public key.
+     * @return Returns the second part of a public key defined by a long[]-array.
+     */
+    public long[] getB() {
+        return b;
+    }
+
+    /**
+     * Simple coin-flipping algorithm to sample from a binomial distribution - the coins are flipped in bulk by a BinomialSampler.
      * @param n is the number of trials.
      * @param p is the probability of success in each trial.
      * @return Returns a sample.
      */
     public int getBinomial(int n, double p) {
-        int sum = 0;
-        for (int i = 0; i < n; i++) {
-            if(rand.nextDouble() < p)
-                sum++;
-        }
-        return sum;
+        return new BinomialSampler(randomness.current()).sampleBinomial(n, p);
     }
 }
 
 class SimpleKeyPair {
     private final SimpleSecretKey secretKey;
     private SimplePublicKey publicKey;
+    private boolean secretKeyGenerated, publicKeyGenerated;
 
     private final int k, n;
-    private final long q;
+    private final Modulus q;
+    private final RandomnessProvider randomness;
 
     /**
      Constructs a SimpleKeyPair object for the simple LWE encryption scheme.
+     The keys are generated lazily, the first time they are asked for, and are the same for every later call.
      * @param n is the dimension of the secret key.
      * @param q is the modulus of the scheme.
      * @param m is the number of "equations".
      * @param k is the error parameter - k defines the binomial distribution ψ_k.
+     * @param randomness is the source of randomness of the keys.
      */
-    SimpleKeyPair(int n, int m, long q, int k) {
-        this.secretKey = new SimpleSecretKey(n, q);
-        this.publicKey = new SimplePublicKey(secretKey, n, m, q, k);
+    SimpleKeyPair(int n, int m, Modulus q, int k, RandomnessProvider randomness) {
+        this.secretKey = new SimpleSecretKey(n, q, randomness);
+        this.publicKey = new SimplePublicKey(secretKey, n, m, q, k, randomness);
+        this.randomness = randomness;
         this.k = k;
         this.q = q;
         this.n = n;
     }
 
     /**
-     * Simple getter method for the secret key.
+     * Simple getter method for the secret key, generated on the first call.
      * @return Returns the secret key.
      */
-    public long[] getSecretKey () {
-        secretKey.genSecretKey();
+    public synchronized long[] getSecretKey () {
+        if (!secretKeyGenerated) {
+            secretKey.genSecretKey();
+            secretKeyGenerated = true;
+        }
         return secretKey.getSecretKey();
     }
 
     /**
      * Simple getter method for the public key.
-     * @return Returns the public key.
+     * @return Returns the seed from which the a_i's of the public key are expanded.
      */
-    public long[][] getA_iPublicKey () {
-        publicKey.genPublicKey();
-        return publicKey.getA();
+    public byte[] getSeedPublicKey () {
+        return getSeedPublicKey(1);
     }
 
-    public long[] getB_iPublicKey() {
+    /**
+     * Simple getter method for the public key, generated on the first call with several threads.
+     * @param parallelism the number of threads generating rows, if the public key has not been generated yet.
+     * @return Returns the seed from which the a_i's of the public key are expanded.
+     */
+    public synchronized byte[] getSeedPublicKey (int parallelism) {
+        generatePublicKey(parallelism);
+        return publicKey.getSeed();
+    }
+
+    /**
+     * Simple getter method for the b_i's of the public key, generated on the first call.
+     * @return Returns the b_i's of the public key.
+     */
+    public synchronized long[] getB_iPublicKey() {
+        generatePublicKey(1);
         return publicKey.getB();
     }
 
+    private void generatePublicKey(int parallelism) {
+        if (!publicKeyGenerated) {
+            getSecretKey();
+            publicKey.genPublicKey(parallelism);
+            publicKeyGenerated = true;
+        }
+    }
+
     /**
      * Generates a new public key based on possibly different number of equations.
      * @param m number of equations in the public key.
      */
-    public void genNewPubKey (int m) {
-        publicKey = new SimplePublicKey (secretKey, m, k, q, n);
+    public synchronized void genNewPubKey (int m) {
+        publicKey = new SimplePublicKey (secretKey, n, m, q, k, randomness);
+        publicKeyGenerated = false;
+    }
+
+    /**
+     * Changes the number of equations of the public key, only generating the rows that are added.
+     * The rows that are kept and the seed of the a_i's are unchanged.
+     * @param m number of equations in the public key.
+     * @param parallelism the number of threads generating the new rows.
+     */
+    public synchronized void resizePubKey (int m, int parallelism) {
+        if (publicKeyGenerated) {
+            publicKey.resize(m, parallelism);
+        } else {
+            publicKey = new SimplePublicKey (secretKey, n, m, q, k, randomness);
+        }
     }
 }
\ No newline at end of file
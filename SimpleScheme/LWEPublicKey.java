@@ -0,0 +1,165 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * An immutable public key of the simple LWE encryption scheme - the m pairs (a_i, b_i = a_i · s + e_i).
+ * The a_i's are held as a flat array, as a seed they are expanded from or as a memory-mapped key file.
+ * A LWEPublicKey object never changes after construction, so it can be shared by any number of threads.
+ */
+public final class LWEPublicKey {
+    final int n, m;
+    final Modulus q;
+    final long[] a;
+    final PublicMatrix matrix;
+    final long[] b;
+
+    private LWEPublicKey(int n, Modulus q, long[] a, PublicMatrix matrix, long[] b) {
+        this.n = n;
+        this.m = b.length;
+        this.q = q;
+        this.a = a;
+        this.matrix = matrix;
+        this.b = b;
+    }
+
+    /**
+     * Constructs a public key whose a_i's are given by a seed.
+     * @param seed the 32-byte seed from which the a_i's are expanded, see 'SeededMatrix'.
+     * @param b the b_i's - copied.
+     * @param n the dimension of the a_i's.
+     * @param q the modulus.
+     * @return Returns the public key.
+     */
+    public static LWEPublicKey fromSeed(byte[] seed, long[] b, int n, long q) {
+        Modulus modulus = new Modulus(q);
+        return new LWEPublicKey(n, modulus, null, new SeededMatrix(seed, n, modulus), b.clone());
+    }
+
+    /**
+     * Constructs a public key from its a_i's.
+     * @param a the a_i's, stored as a flat long[m · n]-array - copied.
+     * @param b the b_i's - copied.
+     * @param q the modulus.
+     * @return Returns the public key.
+     */
+    public static LWEPublicKey fromMatrix(long[] a, long[] b, long q) {
+        if (b.length == 0 || a.length % b.length != 0) {
+            throw new IllegalArgumentException("Invalid public key - there must be n entries of a per entry of b.");
+        }
+        return new LWEPublicKey(a.length / b.length, new Modulus(q), a.clone(), null, b.clone());
+    }
+
+    /**
+     * Reads a public key from a file written by 'write'.
+     * The file is memory-mapped and used as it is - the b_i's are unpacked, but the a_i's are read from the
+     * mapping one at a time while encrypting, so several processes can share a single copy of a large key.
+     * @param file the public key file.
+     * @return Returns the public key.
+     * @throws IOException if the file cannot be read or does not hold a public key.
+     */
+    public static LWEPublicKey read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return decode(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Decodes a public key encoded by 'encode', without copying the a_i's out of the buffer.
+     * @param encoding the encoding, positioned at its header - it must not be changed while the key is used.
+     * @return Returns the public key.
+     * @throws IOException if the buffer does not hold a public key.
+     */
+    public static LWEPublicKey decode(ByteBuffer encoding) throws IOException {
+        ByteBuffer in = encoding.slice().order(ByteOrder.LITTLE_ENDIAN);
+        WireFormat.Header header = WireFormat.readHeader(in, WireFormat.SEEDED_PUBLIC_KEY, WireFormat.PUBLIC_KEY);
+        if (in.remaining() < header.payloadSize()) {
+            throw new IOException("Truncated public key - " + header.payloadSize() + " bytes expected after the header.");
+        }
+        int bits = header.bits();
+        long[] b = new long[header.count];
+        Modulus q = header.modulus();
+        PublicMatrix matrix;
+        if (header.type == WireFormat.SEEDED_PUBLIC_KEY) {
+            byte[] seed = new byte[ChaChaPrg.SEED_LENGTH];
+            in.get(seed);
+            matrix = new SeededMatrix(seed, header.n, q);
+        } else {
+            long matrixSize = WireFormat.packedSize((long) header.count * header.n, bits);
+            matrix = new PackedMatrix(in.slice().order(ByteOrder.LITTLE_ENDIAN), header.n, bits);
+            in.position(in.position() + (int) matrixSize);
+        }
+        WireFormat.unpack(in.slice().order(ByteOrder.LITTLE_ENDIAN), 0, bits, b, 0, b.length);
+        return new LWEPublicKey(header.n, q, null, matrix, b);
+    }
+
+    /**
+     * Encodes the public key in the format read by 'decode'.
+     * A key given by a seed is encoded as its seed and b_i's; any other key is encoded with its a_i's.
+     * @return Returns the encoding, flipped for reading.
+     */
+    public ByteBuffer encode() {
+        byte[] seed = getSeed();
+        return WireFormat.encodePublicKey(seed, seed == null ? getA() : null, b, n, q.getQ());
+    }
+
+    /**
+     * Writes the public key to a file, in the format read by 'read', see 'encode'.
+     * @param file the file to write - replaced if it exists.
+     * @throws IOException if the file cannot be written.
+     */
+    public void write(Path file) throws IOException {
+        WireFormat.writeFile(file, encode());
+    }
+
+    /**
+     * Simple getter method for the dimension.
+     * @return Returns the dimension of the a_i's.
+     */
+    public int getN() {
+        return n;
+    }
+
+    /**
+     * Simple getter method for the number of "equations".
+     * @return Returns m.
+     */
+    public int getM() {
+        return m;
+    }
+
+    /**
+     * Simple getter method for the modulus.
+     * @return Returns q.
+     */
+    public long getQ() {
+        return q.getQ();
+    }
+
+    /**
+     * Simple getter method for the seed of the a_i's.
+     * @return Returns a copy of the seed, or null if the a_i's are not given by a seed.
+     */
+    public byte[] getSeed() {
+        return matrix instanceof SeededMatrix ? ((SeededMatrix) matrix).getSeed() : null;
+    }
+
+    /**
+     * Returns the a_i's, expanding or unpacking them if necessary.
+     * @return Returns a copy of the a_i's as a flat long[m · n]-array - a_i starts at index i · n.
+     */
+    public long[] getA() {
+        return a != null ? a.clone() : matrix.expand(m);
+    }
+
+    /**
+     * Simple getter method for the b_i's.
+     * @return Returns a copy of the b_i's.
+     */
+    public long[] getB() {
+        return b.clone();
+    }
+}
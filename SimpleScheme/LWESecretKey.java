@@ -0,0 +1,87 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * An immutable secret key s of the simple LWE encryption scheme, together with its Montgomery form.
+ * A LWESecretKey object never changes after construction, so it can be shared by any number of threads.
+ */
+public final class LWESecretKey {
+    final int n;
+    final Modulus q;
+    final long[] s;
+    final long[] sMontgomery;
+
+    LWESecretKey(long[] s, Modulus q) {
+        this.n = s.length;
+        this.q = q;
+        this.s = s.clone();
+        this.sMontgomery = q.toMontgomery(this.s);
+    }
+
+    /**
+     * Constructs a secret key.
+     * @param s the secret key - copied.
+     * @param q the modulus.
+     */
+    public LWESecretKey(long[] s, long q) {
+        this(s, new Modulus(q));
+    }
+
+    /**
+     * Reads a secret key from a file written by 'write'.
+     * @param file the secret key file.
+     * @return Returns the secret key.
+     * @throws IOException if the file cannot be read or does not hold a secret key.
+     */
+    public static LWESecretKey read(Path file) throws IOException {
+        ByteBuffer in;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+        }
+        WireFormat.Header header = WireFormat.readHeader(in, WireFormat.SECRET_KEY);
+        if (in.remaining() < header.payloadSize()) {
+            throw new IOException("Truncated secret key - " + header.payloadSize() + " bytes expected after the header.");
+        }
+        Modulus q = header.modulus();
+        long[] s = new long[header.n];
+        WireFormat.unpack(in.slice().order(ByteOrder.LITTLE_ENDIAN), 0, header.bits(), s, 0, s.length);
+        return new LWESecretKey(s, q);
+    }
+
+    /**
+     * Writes the secret key to a file, in the format read by 'read'.
+     * @param file the file to write - replaced if it exists.
+     * @throws IOException if the file cannot be written.
+     */
+    public void write(Path file) throws IOException {
+        WireFormat.writeFile(file, WireFormat.encodeSecretKey(s, q.getQ()));
+    }
+
+    /**
+     * Simple getter method for the dimension.
+     * @return Returns the dimension of s.
+     */
+    public int getN() {
+        return n;
+    }
+
+    /**
+     * Simple getter method for the modulus.
+     * @return Returns q.
+     */
+    public long getQ() {
+        return q.getQ();
+    }
+
+    /**
+     * Simple getter method for the secret key.
+     * @return Returns a copy of s.
+     */
+    public long[] getS() {
+        return s.clone();
+    }
+}
@@ -0,0 +1,133 @@
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Generates load on an 'EncryptionServer' and reports the latency and throughput of its decryptions.
+ * Every connection fetches the public key, encrypts a random batch of bits under it and then sends that batch
+ * for decryption a number of times, keeping up to 'depth' requests in flight before reading an answer.
+ */
+public final class LoadClient {
+
+    private LoadClient() {
+    }
+
+    /**
+     * Runs the load generator.
+     * @param args the address of the server - a port on the loopback interface or the path of a Unix domain socket -
+     *             followed optionally by the number of connections, the number of requests per connection,
+     *             the number of bits per request and the number of requests in flight per connection.
+     * @throws Exception if a connection fails.
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.out.println("Usage: LoadClient <port | socket path> [connections] [requests] [bits per request] [depth]");
+            return;
+        }
+        SocketAddress address = EncryptionServer.parseAddress(args[0]);
+        int connections = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        int requests = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+        int bits = args.length > 3 ? Integer.parseInt(args[3]) : 256;
+        int depth = args.length > 4 ? Integer.parseInt(args[4]) : 8;
+        if (bits % 8 != 0) {
+            throw new IllegalArgumentException("The number of bits per request must be a multiple of 8.");
+        }
+
+        ExecutorService executor = EncryptionServer.newConnectionExecutor();
+        List<Future<long[]>> results = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int c = 0; c < connections; c++) {
+            results.add(executor.submit(() -> run(address, requests, bits, depth)));
+        }
+        long[] latencies = new long[connections * requests];
+        int count = 0;
+        try {
+            for (Future<long[]> result : results) {
+                long[] connectionLatencies = result.get();
+                System.arraycopy(connectionLatencies, 0, latencies, count, connectionLatencies.length);
+                count += connectionLatencies.length;
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new IOException("A connection failed", e.getCause());
+        } finally {
+            executor.shutdown();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        Arrays.sort(latencies);
+        System.out.printf("%d requests of %d bits over %d connections in %.3f s%n", count, bits, connections, seconds);
+        System.out.printf("Throughput: %.1f requests/s, %.1f decrypted bits/s%n", count / seconds, count * (double) bits / seconds);
+        System.out.printf("Latency (us): p50 %d, p90 %d, p99 %d, max %d%n", percentile(latencies, 0.50) / 1000,
+                percentile(latencies, 0.90) / 1000, percentile(latencies, 0.99) / 1000, latencies[latencies.length - 1] / 1000);
+    }
+
+    /**
+     * Runs the requests of a single connection.
+     * @return Returns the latency of each request in nanoseconds - from sending it to having read its answer.
+     */
+    private static long[] run(SocketAddress address, int requests, int bits, int depth) throws IOException {
+        try (SocketChannel connection = SocketChannel.open(address instanceof UnixDomainSocketAddress
+                ? StandardProtocolFamily.UNIX : StandardProtocolFamily.INET)) {
+            connection.connect(address);
+            write(connection, ByteBuffer.wrap(new byte[]{EncryptionServer.PUBLIC_KEY}));
+            LWEPublicKey key = LWEPublicKey.decode(WireFormat.readEncoding(connection,
+                    WireFormat.SEEDED_PUBLIC_KEY, WireFormat.PUBLIC_KEY));
+
+            byte[] message = new byte[bits / 8];
+            RandomnessProvider.getDefault().nextBytes(message);
+            Ciphertext[] ciphertexts = new Encryptor(key).encryptBits(message);
+            ByteBuffer batch = WireFormat.encodeCiphertexts(ciphertexts, bits, key.getN(), key.getQ());
+            ByteBuffer request = ByteBuffer.allocate(1 + batch.remaining());
+            request.put(EncryptionServer.DECRYPT).put(batch).flip();
+
+            long[] latencies = new long[requests];
+            ArrayDeque<Long> sent = new ArrayDeque<>();
+            int answered = 0;
+            while (answered < requests) {
+                while (sent.size() < depth && answered + sent.size() < requests) {
+                    sent.add(System.nanoTime());
+                    write(connection, request.duplicate());
+                }
+                ByteBuffer answer = WireFormat.readEncoding(connection, WireFormat.BITS);
+                if (answer == null) {
+                    throw new IOException("The server closed the connection.");
+                }
+                latencies[answered++] = System.nanoTime() - sent.poll();
+                WireFormat.Header header = WireFormat.readHeader(answer, WireFormat.BITS);
+                long[] decrypted = WireFormat.decodeBits(header, answer.slice().order(ByteOrder.LITTLE_ENDIAN));
+                for (int l = 0; l < bits; l++) {
+                    if (((decrypted[l >>> 6] >>> l) & 1) != ((message[l >>> 3] >>> (l & 7)) & 1)) {
+                        throw new IOException("Bit " + l + " was decrypted incorrectly.");
+                    }
+                }
+            }
+            return latencies;
+        }
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        return sorted[Math.min(sorted.length - 1, (int) (p * sorted.length))];
+    }
+
+    private static void write(SocketChannel connection, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            connection.write(buffer);
+        }
+    }
+}
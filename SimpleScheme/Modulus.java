@@ -0,0 +1,218 @@
+/**
+ * Modular arithmetic for a modulus q of at most 62 bits using only 'long'-arithmetic.
+ * For an odd modulus, reductions of single numbers use Barrett reduction and multiplications use Montgomery
+ * reduction with R = 2^64, both built on Math.multiplyHigh, such that no division is performed after initialisation.
+ * For a power of two modulus, q = 2^k, every reduction is a mask and all arithmetic may simply wrap around,
+ * as 2^k divides 2^64.
+ * Sums of elements of [0, q) may be accumulated lazily - up to 'getLazyBudget' additions can be made to an
+ * element of [0, q) before it has to be reduced.
+ */
+final class Modulus {
+    /**
+     * The largest supported bit length of the modulus - products of two elements are below 2^124,
+     * and sums of two elements are below 2^63.
+     */
+    static final int MAX_BIT_LENGTH = 62;
+
+    private final long q;
+    private final boolean powerOfTwo;
+    private final long mask;
+    private final long barrett;
+    private final long r64;
+    private final long r2;
+    private final long qInv;
+    private final long lazyBudget;
+
+    /**
+     * Constructs a Modulus object used to compute modulo q.
+     * @param q is the modulus - must either be odd and below 2^62, or a power of two in [4, 2^62].
+     */
+    Modulus(long q) {
+        this.powerOfTwo = q > 0 && Long.bitCount(q) == 1;
+        if (powerOfTwo ? q < 4 || q > 1L << MAX_BIT_LENGTH
+                : q < 3 || (q & 1) == 0 || 64 - Long.numberOfLeadingZeros(q) > MAX_BIT_LENGTH) {
+            throw new IllegalArgumentException("Invalid modulus " + q + " - it must be odd and at most " + MAX_BIT_LENGTH
+                    + " bits, or a power of two of at most 2^" + MAX_BIT_LENGTH + ".");
+        }
+        this.q = q;
+        this.mask = q - 1;
+        if (powerOfTwo) {
+            this.barrett = 0;
+            this.r64 = 0;
+            this.r2 = 0;
+            this.qInv = 0;
+            this.lazyBudget = Long.MAX_VALUE;
+            return;
+        }
+        this.barrett = Long.divideUnsigned(-1L, q);
+        long r = Long.remainderUnsigned(-1L, q) + 1;
+        this.r64 = r == q ? 0 : r;
+        r = r64;
+        for (int i = 0; i < 64; i++) {
+            r = add(r, r);
+        }
+        this.r2 = r;
+        long inv = q;
+        for (int i = 0; i < 5; i++) {
+            inv *= 2 - q * inv;
+        }
+        this.qInv = -inv;
+        this.lazyBudget = Long.MAX_VALUE / q - 1;
+    }
+
+    /**
+     * Simple getter method for the modulus.
+     * @return Returns q.
+     */
+    long getQ() {
+        return q;
+    }
+
+    /**
+     * Tells whether q = 2^k, in which case reductions are masks and intermediate results may overflow freely.
+     * @return Returns true if q is a power of two.
+     */
+    boolean isPowerOfTwo() {
+        return powerOfTwo;
+    }
+
+    /**
+     * The number of elements of [0, q) that can be added to an element of [0, q) without overflowing a long.
+     * @return Returns ⌊(2^63 - 1) / q⌋ - 1, which is at least 1 - or 2^63 - 1 if q is a power of two,
+     * where overflowing is harmless.
+     */
+    long getLazyBudget() {
+        return lazyBudget;
+    }
+
+    /**
+     * Reduces any long modulo q using Barrett reduction.
+     * @param x a number - may be negative.
+     * @return Returns x mod q in [0, q).
+     */
+    long reduce(long x) {
+        if (powerOfTwo) {
+            return x & mask;
+        }
+        long r = x - unsignedMultiplyHigh(x, barrett) * q;
+        if (r >= q) {
+            r -= q;
+        }
+        if (x < 0) {
+            r -= r64;
+            if (r < 0) {
+                r += q;
+            }
+        }
+        return r;
+    }
+
+    /**
+     * Reduces every entry of a vector in place.
+     * @param v the vector, possibly holding lazily accumulated sums.
+     */
+    void reduce(long[] v) {
+        for (int i = 0; i < v.length; i++) {
+            v[i] = reduce(v[i]);
+        }
+    }
+
+    /**
+     * Modular addition.
+     * @param x an element of [0, q).
+     * @param y an element of [0, q).
+     * @return Returns x + y mod q.
+     */
+    long add(long x, long y) {
+        if (powerOfTwo) {
+            return (x + y) & mask;
+        }
+        long sum = x + y;
+        return sum >= q ? sum - q : sum;
+    }
+
+    /**
+     * Modular subtraction.
+     * @param x an element of [0, q).
+     * @param y an element of [0, q).
+     * @return Returns x - y mod q.
+     */
+    long sub(long x, long y) {
+        if (powerOfTwo) {
+            return (x - y) & mask;
+        }
+        long diff = x - y;
+        return diff < 0 ? diff + q : diff;
+    }
+
+    /**
+     * Modular multiplication of two elements in ordinary form.
+     * @param x an element of [0, q).
+     * @param y an element of [0, q).
+     * @return Returns x · y mod q.
+     */
+    long mul(long x, long y) {
+        return mulMontgomery(x, toMontgomery(y));
+    }
+
+    /**
+     * Converts an element to Montgomery form, such that it can be used as the second argument of 'mulMontgomery'.
+     * For a power of two modulus the Montgomery form is the ordinary form.
+     * @param x an element of [0, q).
+     * @return Returns x · 2^64 mod q.
+     */
+    long toMontgomery(long x) {
+        if (powerOfTwo) {
+            return x;
+        }
+        return redc(Math.multiplyHigh(x, r2), x * r2);
+    }
+
+    /**
+     * Converts every entry of a vector to Montgomery form.
+     * @param v a vector with entries in [0, q).
+     * @return Returns a new vector holding v[l] · 2^64 mod q.
+     */
+    long[] toMontgomery(long[] v) {
+        long[] result = new long[v.length];
+        for (int i = 0; i < v.length; i++) {
+            result[i] = toMontgomery(v[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Modular multiplication where the second factor is in Montgomery form.
+     * @param x an element of [0, q).
+     * @param yMontgomery y · 2^64 mod q for an element y of [0, q).
+     * @return Returns x · y mod q in ordinary form.
+     */
+    long mulMontgomery(long x, long yMontgomery) {
+        if (powerOfTwo) {
+            return (x * yMontgomery) & mask;
+        }
+        return redc(Math.multiplyHigh(x, yMontgomery), x * yMontgomery);
+    }
+
+    /**
+     * Montgomery reduction of a 128-bit number T = hi · 2^64 + lo below q · 2^64.
+     * @param hi the upper 64 bits of T.
+     * @param lo the lower 64 bits of T.
+     * @return Returns T · 2^(-64) mod q.
+     */
+    private long redc(long hi, long lo) {
+        long m = lo * qInv;
+        long t = hi + unsignedMultiplyHigh(m, q) + (lo != 0 ? 1 : 0);
+        return t >= q ? t - q : t;
+    }
+
+    /**
+     * Computes the upper 64 bits of the product of two unsigned longs.
+     * @param x the first factor, read as unsigned.
+     * @param y the second factor, read as unsigned.
+     * @return Returns ⌊x · y / 2^64⌋.
+     */
+    private static long unsignedMultiplyHigh(long x, long y) {
+        return Math.multiplyHigh(x, y) + ((x >> 63) & y) + ((y >> 63) & x);
+    }
+}
@@ -0,0 +1,36 @@
+import java.nio.ByteBuffer;
+
+/**
+ * The matrix A of a public key read directly from its packed binary form, see 'WireFormat'.
+ * The buffer is typically a memory-mapped key file, so the matrix is never deserialised into heap arrays;
+ * a row is unpacked from the buffer every time it is needed.
+ */
+final class PackedMatrix implements PublicMatrix {
+    private final ByteBuffer packed;
+    private final int n;
+    private final int bits;
+
+    /**
+     * Constructs a PackedMatrix object over packed coefficients.
+     * @param packed the packed coefficients of the matrix, row by row - only read with absolute gets.
+     * @param n is the dimension of a row.
+     * @param bits is the number of bits of each coefficient.
+     */
+    PackedMatrix(ByteBuffer packed, int n, int bits) {
+        this.packed = packed;
+        this.n = n;
+        this.bits = bits;
+    }
+
+    @Override
+    public void expandRow(int i, long[] dst, int offset) {
+        WireFormat.unpack(packed, (long) i * n, bits, dst, offset, n);
+    }
+
+    @Override
+    public long[] expand(int m) {
+        long[] a = new long[m * n];
+        WireFormat.unpack(packed, 0, bits, a, 0, m * n);
+        return a;
+    }
+}
@@ -0,0 +1,240 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Chooses the parameters of the simple LWE encryption scheme for a target security level, a bound on the
+ * probability of a decryption failure and an additive depth, at the lowest cost.
+ * For every dimension n and bit length of q the planner takes the smallest error parameter k that reaches the
+ * security level and the number of "equations" m the leftover hash lemma asks for, drops the combinations whose
+ * failure probability is too high, and ranks the rest by a cost model - or by timing the best of them.
+ */
+public final class ParameterPlanner {
+    private static final int MIN_N = 16, MAX_N = 2048, N_STEP = 16;
+    private static final int MIN_Q_BIT_LENGTH = 8, MAX_Q_BIT_LENGTH = 40;
+
+    /**
+     * The largest error parameter considered - a sample costs about 2k random bits.
+     */
+    private static final int MAX_K = 1 << 20;
+
+    /**
+     * The distinguishing advantage the security estimate is made for.
+     */
+    private static final double LOG2_ADVANTAGE = -64;
+
+    /**
+     * The number of bits encrypted under one key, over which the cost of key generation is spread.
+     */
+    private static final double BITS_PER_KEY = 1 << 20;
+
+    /**
+     * The modelled costs of the basic operations, relative to an addition of two words.
+     * A ChaCha20 word of an expanded a_i costs about four additions, and a ciphertext byte is charged one
+     * addition for being stored or sent.
+     */
+    private static final double EXPANSION_COST = 4, MONTGOMERY_COST = 3, BYTE_COST = 1;
+
+    private final int securityBits;
+    private final double log2FailureBound;
+    private final int depth;
+
+    /**
+     * Constructs a ParameterPlanner object.
+     * @param securityBits the security level to reach, in bits.
+     * @param log2FailureBound log_2 of the largest acceptable probability that a bit decrypts incorrectly, e.g. -40.
+     * @param depth the additive depth to support - the sum of 2^depth ciphertexts must still decrypt correctly.
+     */
+    public ParameterPlanner(int securityBits, double log2FailureBound, int depth) {
+        if (securityBits < 1 || log2FailureBound >= 0 || depth < 0) {
+            throw new IllegalArgumentException("Invalid targets - the security level must be positive, "
+                    + "the failure bound below 2^0 and the depth non-negative.");
+        }
+        this.securityBits = securityBits;
+        this.log2FailureBound = log2FailureBound;
+        this.depth = depth;
+    }
+
+    /**
+     * Plans parameters from a target security level, failure bound and depth, prints them and optionally stores them.
+     * @param args the security level in bits, log_2 of the failure bound, the depth, optionally the number of
+     *             candidates to time - 0 to rank by the cost model alone - and optionally a file to store the profile in.
+     * @throws IOException if the profile cannot be stored.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3) {
+            System.out.println("Usage: ParameterPlanner <security bits> <log_2 of failure bound> <depth> [candidates to time] [profile file]");
+            return;
+        }
+        ParameterPlanner planner = new ParameterPlanner(Integer.parseInt(args[0]), Double.parseDouble(args[1]),
+                Integer.parseInt(args[2]));
+        int timed = args.length > 3 ? Integer.parseInt(args[3]) : 0;
+        Parameters parameters = timed > 0 ? planner.planMeasured(timed) : planner.plan();
+        System.out.println(parameters);
+        if (args.length > 4) {
+            parameters.store(Path.of(args[4]));
+        }
+    }
+
+    /**
+     * Plans the parameters with the lowest modelled cost.
+     * @return Returns the parameters.
+     * @throws NoSuchElementException if no parameters in the search space meet the targets.
+     */
+    public Parameters plan() {
+        return candidates(1).get(0);
+    }
+
+    /**
+     * Plans the parameters with the lowest measured cost among the candidates with the lowest modelled cost.
+     * Every candidate is timed by generating keys and encrypting and decrypting with a Party, see 'measuredCost'.
+     * @param count the number of candidates to time.
+     * @return Returns the parameters.
+     * @throws NoSuchElementException if no parameters in the search space meet the targets.
+     */
+    public Parameters planMeasured(int count) {
+        Parameters best = null;
+        double bestCost = Double.POSITIVE_INFINITY;
+        for (Parameters candidate : candidates(count)) {
+            double cost = measuredCost(candidate);
+            if (cost < bestCost) {
+                best = candidate;
+                bestCost = cost;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Lists the parameters meeting the targets with the lowest modelled cost.
+     * @param count the largest number of candidates to list.
+     * @return Returns the candidates, cheapest first.
+     * @throws NoSuchElementException if no parameters in the search space meet the targets.
+     */
+    public List<Parameters> candidates(int count) {
+        List<Parameters> candidates = new ArrayList<>();
+        for (int n = MIN_N; n <= MAX_N; n += N_STEP) {
+            for (int qBitLength = MIN_Q_BIT_LENGTH; qBitLength <= MAX_Q_BIT_LENGTH; qBitLength++) {
+                for (boolean powerOfTwo : new boolean[]{false, true}) {
+                    Parameters candidate = candidate(n, qBitLength, powerOfTwo);
+                    if (candidate != null) {
+                        candidates.add(candidate);
+                    }
+                }
+            }
+        }
+        if (candidates.isEmpty()) {
+            throw new NoSuchElementException("No parameters with n <= " + MAX_N + " and log_2(q) <= " + MAX_Q_BIT_LENGTH
+                    + " reach " + securityBits + " bits of security with a failure probability below 2^" + log2FailureBound + ".");
+        }
+        candidates.sort(Comparator.comparingDouble(ParameterPlanner::modelledCost));
+        return candidates.subList(0, Math.min(count, candidates.size()));
+    }
+
+    /**
+     * The cheapest parameters for a given dimension and modulus, if any meet the targets.
+     * @return Returns the parameters, or null if the targets cannot be met.
+     */
+    private Parameters candidate(int n, int qBitLength, boolean powerOfTwo) {
+        // Lindner–Peikert: log_2(δ) = log_2(β)^2 / (4n · log_2(q)) must stay below 1.8 / (security + 110).
+        double maxLog2Beta = Math.sqrt(4.0 * n * qBitLength * 1.8 / (securityBits + 110));
+        double sigma = Math.pow(2, qBitLength - maxLog2Beta) * betaFactor();
+        long k = Math.max(2, (long) Math.ceil(2 * sigma * sigma + 1));
+        if (k > MAX_K) {
+            return null;
+        }
+        int m = (n + 1) * qBitLength + 2 * securityBits;
+        if (log2FailureProbability(qBitLength, powerOfTwo, m, (int) k, depth) > log2FailureBound) {
+            return null;
+        }
+        return new Parameters(n, qBitLength, powerOfTwo, m, (int) k, depth);
+    }
+
+    /**
+     * Estimates the security of LWE with the errors of the scheme, by the model of
+     * Better Key Sizes (and Attacks) for LWE-Based Encryption - Lindner, Peikert (https://eprint.iacr.org/2010/613):
+     * the distinguishing attack needs a basis of root-Hermite factor δ with log_2(δ) = log_2(β)^2 / (4n · log_2(q)),
+     * where β = q / σ · √(ln(1/ε) / 2π²), and takes 2^(1.8 / log_2(δ) - 110) seconds.
+     * @param n the dimension.
+     * @param qBitLength the bit length of q - q is taken to be 2^qBitLength.
+     * @param k the error parameter - the errors have variance (k - 1) / 2.
+     * @return Returns the estimated security in bits.
+     */
+    static double securityBits(int n, int qBitLength, int k) {
+        double sigma = Math.sqrt((k - 1) / 2.0);
+        double log2Beta = qBitLength - Math.log(sigma / betaFactor()) / Math.log(2);
+        if (sigma == 0 || log2Beta <= 0) {
+            return sigma == 0 ? 0 : Double.POSITIVE_INFINITY;
+        }
+        double log2Delta = log2Beta * log2Beta / (4.0 * n * qBitLength);
+        return 1.8 / log2Delta - 110;
+    }
+
+    /**
+     * Models the probability that the XOR of 2^depth bits decrypts incorrectly from the sum of their ciphertexts.
+     * The error of a ciphertext is the sum of the errors of about m/2 rows, so the error of the sum has
+     * variance σ^2 = 2^depth · m/2 · (k - 1)/2, and decryption fails when it exceeds q/4 - with probability at most
+     * 2 · exp(-(q/4)^2 / 2σ^2) by the Gaussian tail.
+     * @param qBitLength the bit length of q.
+     * @param powerOfTwo whether q = 2^qBitLength - otherwise q may be as small as 2^(qBitLength - 1).
+     * @param m the number of "equations".
+     * @param k the error parameter.
+     * @param depth the additive depth.
+     * @return Returns log_2 of the probability.
+     */
+    static double log2FailureProbability(int qBitLength, boolean powerOfTwo, int m, int k, int depth) {
+        double variance = Math.pow(2, depth) * m / 2.0 * (k - 1) / 2.0;
+        if (variance == 0) {
+            return Double.NEGATIVE_INFINITY;
+        }
+        double quarter = Math.pow(2, (powerOfTwo ? qBitLength : qBitLength - 1) - 2);
+        return Math.min(0, 1 - quarter * quarter / (2 * variance) / Math.log(2));
+    }
+
+    /**
+     * Models the cost of encrypting and decrypting a bit, including a share of the key generation.
+     * Encrypting a block of 64 bits expands every a_i once and adds about half of them to each ciphertext;
+     * decrypting takes n modular products; generating keys expands all a_i's, takes m · n products and samples m errors.
+     * @param parameters the parameters.
+     * @return Returns the cost in additions of two words per bit.
+     */
+    static double modelledCost(Parameters parameters) {
+        double n = parameters.getN(), m = parameters.getM();
+        double product = parameters.isPowerOfTwoModulus() ? 1 : MONTGOMERY_COST;
+        double encrypt = m * n * EXPANSION_COST / 64 + m / 2 * (n + 1);
+        double decrypt = n * product;
+        double keyGen = m * n * (EXPANSION_COST + product) + m * 2.0 * parameters.getK() / 64;
+        return encrypt + decrypt + keyGen / BITS_PER_KEY + parameters.getCiphertextBytes() * BYTE_COST;
+    }
+
+    /**
+     * Measures the cost of encrypting and decrypting a bit with a Party, including a share of the key generation.
+     * @param parameters the parameters.
+     * @return Returns the cost in nanoseconds per bit.
+     */
+    static double measuredCost(Parameters parameters) {
+        Party party = new Party(parameters);
+        long start = System.nanoTime();
+        party.generateKeys();
+        double keyGen = System.nanoTime() - start;
+        byte[] message = new byte[64];
+        RandomnessProvider.getDefault().nextBytes(message);
+        double best = Double.POSITIVE_INFINITY;
+        for (int repetition = 0; repetition < 5; repetition++) {
+            start = System.nanoTime();
+            party.decryptToBits(party.encryptBits(message));
+            best = Math.min(best, (System.nanoTime() - start) / (message.length * 8.0));
+        }
+        return best + keyGen / BITS_PER_KEY;
+    }
+
+    /**
+     * The factor √(ln(1/ε) / 2π²) between q/σ and β in the Lindner–Peikert model.
+     */
+    private static double betaFactor() {
+        return Math.sqrt(-LOG2_ADVANTAGE * Math.log(2) / (2 * Math.PI * Math.PI));
+    }
+}
@@ -0,0 +1,160 @@
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+
+/**
+ * A parameter profile of the simple LWE encryption scheme - the dimension n, the modulus q, the number of
+ * "equations" m and the error parameter k - together with the properties the profile was chosen for.
+ * A profile is stored as a properties file, so a planned set of parameters can be reused without planning again.
+ */
+public final class Parameters {
+    private final int n, qBitLength, m, k, depth;
+    private final boolean powerOfTwoModulus;
+
+    /**
+     * Constructs a Parameters object.
+     * @param n is the dimension of the secret key.
+     * @param qBitLength is the bit length of the prime modulus, or k if q = 2^k.
+     * @param powerOfTwoModulus whether q = 2^qBitLength rather than a random prime of bit length qBitLength.
+     * @param m is the number of "equations".
+     * @param k is the error parameter - the errors are the difference of two samples of Bin(k - 1, 1/2).
+     * @param depth is the additive depth supported - the sum of 2^depth ciphertexts still decrypts to the XOR of their bits.
+     */
+    public Parameters(int n, int qBitLength, boolean powerOfTwoModulus, int m, int k, int depth) {
+        if (n < 1 || m < 1 || k < 1 || depth < 0) {
+            throw new IllegalArgumentException("Invalid parameters - n, m and k must be positive and the depth non-negative.");
+        }
+        this.n = n;
+        this.qBitLength = qBitLength;
+        this.powerOfTwoModulus = powerOfTwoModulus;
+        this.m = m;
+        this.k = k;
+        this.depth = depth;
+    }
+
+    /**
+     * Reads a profile written by 'store'.
+     * @param file the profile.
+     * @return Returns the parameters.
+     * @throws IOException if the file cannot be read or lacks a parameter.
+     */
+    public static Parameters load(Path file) throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        try {
+            return new Parameters(Integer.parseInt(properties.getProperty("n")),
+                    Integer.parseInt(properties.getProperty("qBitLength")),
+                    Boolean.parseBoolean(properties.getProperty("powerOfTwoModulus")),
+                    Integer.parseInt(properties.getProperty("m")),
+                    Integer.parseInt(properties.getProperty("k")),
+                    Integer.parseInt(properties.getProperty("depth", "0")));
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid parameter profile " + file + " - " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Writes the profile, including the modelled properties of the parameters as comments.
+     * @param file the file to write - replaced if it exists.
+     * @throws IOException if the file cannot be written.
+     */
+    public void store(Path file) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("n", Integer.toString(n));
+        properties.setProperty("qBitLength", Integer.toString(qBitLength));
+        properties.setProperty("powerOfTwoModulus", Boolean.toString(powerOfTwoModulus));
+        properties.setProperty("m", Integer.toString(m));
+        properties.setProperty("k", Integer.toString(k));
+        properties.setProperty("depth", Integer.toString(depth));
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            properties.store(writer, toString());
+        }
+    }
+
+    /**
+     * Simple getter method for the dimension of the secret key.
+     * @return Returns the dimension of the secret key.
+     */
+    public int getN() {
+        return n;
+    }
+
+    /**
+     * Simple getter method for the bit length of the modulus.
+     * @return Returns the bit length of the modulus.
+     */
+    public int getQBitLength() {
+        return qBitLength;
+    }
+
+    /**
+     * Simple getter method for whether q = 2^qBitLength.
+     * @return Returns whether q = 2^qBitLength.
+     */
+    public boolean isPowerOfTwoModulus() {
+        return powerOfTwoModulus;
+    }
+
+    /**
+     * Simple getter method for the number of "equations".
+     * @return Returns the number of "equations".
+     */
+    public int getM() {
+        return m;
+    }
+
+    /**
+     * Simple getter method for the error parameter.
+     * @return Returns the error parameter.
+     */
+    public int getK() {
+        return k;
+    }
+
+    /**
+     * Simple getter method for the additive depth supported.
+     * @return Returns the additive depth supported.
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * The estimated security of the parameters, see 'ParameterPlanner.securityBits'.
+     * @return Returns the estimated security in bits.
+     */
+    public double getSecurityBits() {
+        return ParameterPlanner.securityBits(n, qBitLength, k);
+    }
+
+    /**
+     * The modelled probability that a bit, or the XOR of 2^depth bits, decrypts incorrectly,
+     * see 'ParameterPlanner.log2FailureProbability'.
+     * @return Returns log_2 of the probability.
+     */
+    public double getLog2FailureProbability() {
+        return ParameterPlanner.log2FailureProbability(qBitLength, powerOfTwoModulus, m, k, depth);
+    }
+
+    /**
+     * The size of a ciphertext in the packed binary format, without the header - see 'WireFormat'.
+     * @return Returns the number of bytes per encrypted bit.
+     */
+    public long getCiphertextBytes() {
+        return WireFormat.packedSize(n + 1, qBitLength);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("n = %d, log_2(q) = %d%s, m = %d, k = %d, depth = %d: ~%.0f bits of security, "
+                        + "failure probability 2^%.1f, %d bytes per ciphertext",
+                n, qBitLength, powerOfTwoModulus ? " (q = 2^" + qBitLength + ")" : "", m, k, depth,
+                getSecurityBits(), getLog2FailureProbability(), getCiphertextBytes());
+    }
+}
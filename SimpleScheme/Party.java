@@ -1,53 +1,288 @@
+import java.io.IOException;
 import java.math.BigInteger;
-import java.security.SecureRandom;
-import java.util.Arrays;
-import java.util.InputMismatchException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
 import java.util.NoSuchElementException;
 
+/**
+ * Emulates a party of the simple LWE encryption scheme, holding its own keys or the public key of another party.
+ * The keys are immutable and encryption and decryption are done by an Encryptor and a Decryptor, which can be
+ * taken from the Party and shared between threads; only the emulated sending and receiving of a single ciphertext
+ * keeps state in the Party.
+ */
 public class Party {
     private int n, m, k;
-    private long q;
-    private long[] secretKey;
-    private long[][] a;
-    private long[] b;
-    private long[][] encryptionOfABit,uv = new long[2][];
+    private Modulus q;
+    private final int qBitLength;
+    private final boolean powerOfTwoModulus;
+    private KeyManager keyManager;
+    private LWEPublicKey publicKey;
+    private LWESecretKey secretKey;
+    private SimpleKeyPair keyPair;
+    private Encryptor encryptor;
+    private Decryptor decryptor;
+    private Ciphertext encryptionOfABit, uv;
+    private final RandomnessProvider randomness;
 
     /**
      Constructs a Party object for the simple LWE encryption scheme.
      m is the number of "equations.
      k defines the distribution.
      * @param n is the dimension of the secret key.
-     * @param qBitLength is the modulus of the scheme.
+     * @param qBitLength is the bit length of the modulus of the scheme - must be in [3, 62].
      */
     public Party(int n, int qBitLength){
-        SecureRandom rand = new SecureRandom();
+        this(n, qBitLength, false);
+    }
+
+    /**
+     Constructs a Party object for the simple LWE encryption scheme, possibly with a power of two modulus.
+     With a power of two modulus no prime has to be found, and every reduction is a mask rather than a division.
+     * @param n is the dimension of the secret key.
+     * @param qBitLength is the bit length of the prime modulus - must be in [3, 62] - or k if q = 2^k - must be in [2, 62].
+     * @param powerOfTwoModulus whether q = 2^qBitLength rather than a random prime of bit length qBitLength.
+     */
+    public Party(int n, int qBitLength, boolean powerOfTwoModulus){
+        this(n, qBitLength, powerOfTwoModulus, RandomnessProvider.getDefault());
+    }
+
+    /**
+     Constructs a Party object for the simple LWE encryption scheme drawing its randomness from a given provider.
+     * @param n is the dimension of the secret key.
+     * @param qBitLength is the bit length of the prime modulus - must be in [3, 62] - or k if q = 2^k - must be in [2, 62].
+     * @param powerOfTwoModulus whether q = 2^qBitLength rather than a random prime of bit length qBitLength.
+     * @param randomness is the source of all randomness of the Party - keys, moduli and encryptions.
+     */
+    public Party(int n, int qBitLength, boolean powerOfTwoModulus, RandomnessProvider randomness){
         this.n = n;
-        this.q = BigInteger.probablePrime(qBitLength, rand).abs().longValue();
-        System.out.println(q);
-        this.m = ((2 * n + 1) * (int) log(q));
-        this.k = (int) Math.floor(q /(2.* (m)));
-        this.a = new long[m][n];
-        this.b = new long[m];
+        this.randomness = randomness;
+        this.qBitLength = qBitLength;
+        this.powerOfTwoModulus = powerOfTwoModulus;
+        this.q = chooseModulus(qBitLength, powerOfTwoModulus, randomness);
+        // m and k are taken from the smallest modulus of the bit length, so they do not depend on the prime drawn.
+        long smallestQ = 1L << (powerOfTwoModulus ? qBitLength : qBitLength - 1);
+        this.m = ((2 * n + 1) * (int) log(smallestQ));
+        this.k = (int) Math.floor(smallestQ /(2.* (m)));
     }
 
     /**
-     * Creates a SimpleKeyPair object that generates a key pair based on the Party's initialisation values.
+     Constructs a Party object for the simple LWE encryption scheme from a parameter profile, see 'ParameterPlanner'.
+     * @param parameters the dimension, modulus, number of "equations" and error parameter to use.
+     */
+    public Party(Parameters parameters){
+        this(parameters, RandomnessProvider.getDefault());
+    }
+
+    /**
+     Constructs a Party object for the simple LWE encryption scheme from a parameter profile, drawing its randomness from a given provider.
+     * @param parameters the dimension, modulus, number of "equations" and error parameter to use.
+     * @param randomness is the source of all randomness of the Party - keys, moduli and encryptions.
+     */
+    public Party(Parameters parameters, RandomnessProvider randomness){
+        this.n = parameters.getN();
+        this.randomness = randomness;
+        this.qBitLength = parameters.getQBitLength();
+        this.powerOfTwoModulus = parameters.isPowerOfTwoModulus();
+        this.q = chooseModulus(parameters.getQBitLength(), parameters.isPowerOfTwoModulus(), randomness);
+        this.m = parameters.getM();
+        this.k = parameters.getK();
+    }
+
+    /**
+     * Chooses the modulus of the scheme.
+     * @param qBitLength is the bit length of the prime modulus - must be in [3, 62] - or k if q = 2^k - must be in [2, 62].
+     * @param powerOfTwoModulus whether q = 2^qBitLength rather than a random prime of bit length qBitLength.
+     * @param randomness is the source of the random prime.
+     * @return Returns the modulus.
+     */
+    static Modulus chooseModulus(int qBitLength, boolean powerOfTwoModulus, RandomnessProvider randomness){
+        checkModulusBitLength(qBitLength, powerOfTwoModulus);
+        Modulus q;
+        if (powerOfTwoModulus){
+            q = new Modulus(1L << qBitLength);
+        } else {
+            q = new Modulus(BigInteger.probablePrime(qBitLength, randomness.current()).abs().longValue());
+        }
+        return q;
+    }
+
+    /**
+     * Checks the bit length of the modulus of the scheme.
+     * @param qBitLength is the bit length of the prime modulus - must be in [3, 62] - or k if q = 2^k - must be in [2, 62].
+     * @param powerOfTwoModulus whether q = 2^qBitLength rather than a random prime of bit length qBitLength.
+     */
+    static void checkModulusBitLength(int qBitLength, boolean powerOfTwoModulus){
+        if (qBitLength < (powerOfTwoModulus ? 2 : 3) || qBitLength > Modulus.MAX_BIT_LENGTH){
+            throw new IllegalArgumentException("Invalid bit length of the modulus - it must be in [" + (powerOfTwoModulus ? 2 : 3)
+                    + ", " + Modulus.MAX_BIT_LENGTH + "].");
+        }
+    }
+
+    /**
+     * Generates a key pair based on the Party's initialisation values - taken from the KeyManager set by
+     * 'useKeyManager' if there is one, and otherwise generated by a SimpleKeyPair object on the calling thread.
      */
     public void generateKeys(){
-        SimpleKeyPair kp = new SimpleKeyPair(n, m, q, k);
-        secretKey = kp.getSecretKey();
-        a = kp.getA_iPublicKey();
-        b = kp.getB_iPublicKey();
+        if (keyManager != null){
+            generateKeys(keyManager);
+        } else {
+            generateKeys(1);
+        }
+    }
+
+    /**
+     * Makes 'generateKeys()' take fresh key pairs from a KeyManager, and starts pregenerating them for this Party.
+     * @param keyManager the KeyManager generating the key pairs, or null to generate them on the calling thread again.
+     */
+    public void useKeyManager(KeyManager keyManager){
+        this.keyManager = keyManager;
+        if (keyManager != null){
+            keyManager.pregenerate(getKeySpec());
+        }
+    }
+
+    /**
+     * Creates a SimpleKeyPair object that generates a key pair based on the Party's initialisation values,
+     * where the rows of the public key are generated by several threads.
+     * @param parallelism the number of threads generating rows of the public key.
+     */
+    public void generateKeys(int parallelism){
+        SimpleKeyPair kp = new SimpleKeyPair(n, m, q, k, randomness);
+        setSecretKey(new LWESecretKey(kp.getSecretKey(), q));
+        setPublicKey(LWEPublicKey.fromSeed(kp.getSeedPublicKey(parallelism), kp.getB_iPublicKey(), n, q.getQ()));
+        keyPair = kp;
+    }
+
+    /**
+     * Changes the number of equations of the public key generated by 'generateKeys', without regenerating it;
+     * only the added rows are computed. Ciphertexts encrypted before stay decryptable.
+     * @param m the new number of equations.
+     */
+    public void resizePublicKey(int m){
+        resizePublicKey(m, 1);
+    }
+
+    /**
+     * Changes the number of equations of the public key generated by 'generateKeys', without regenerating it,
+     * where the added rows are generated by several threads.
+     * @param m the new number of equations.
+     * @param parallelism the number of threads generating the added rows.
+     */
+    public void resizePublicKey(int m, int parallelism){
+        if (keyPair == null){
+            throw new NoSuchElementException("No key pair has been generated by this Party.");
+        }
+        keyPair.resizePubKey(m, parallelism);
+        setPublicKey(LWEPublicKey.fromSeed(keyPair.getSeedPublicKey(parallelism), keyPair.getB_iPublicKey(), n, q.getQ()));
+    }
+
+    /**
+     * Takes a fresh key pair for the Party's initialisation values from a KeyManager, adopting its modulus.
+     * Returns without waiting for key generation if the key pair was pregenerated, see 'KeyManager.pregenerate'.
+     * @param keyManager the KeyManager generating the key pair.
+     */
+    public void generateKeys(KeyManager keyManager){
+        KeyManager.KeyPair keyPair = keyManager.take(getKeySpec());
+        setSecretKey(keyPair.getSecretKey());
+        setPublicKey(keyPair.getPublicKey());
+    }
+
+    /**
+     * The parameter profile the keys of this Party are generated for - to pregenerate keys with a KeyManager.
+     * Parties constructed with the same parameters have the same profile, whatever modulus they have drawn.
+     * @return Returns the parameter set.
+     */
+    public KeyManager.Spec getKeySpec(){
+        return new KeyManager.Spec(n, qBitLength, powerOfTwoModulus, m, k);
     }
 
     /**
      * Emulates the retrieval of a public key.
-     * @param a the a_i's of the public key.
+     * The number of equations and the modulus are taken from the public key, as they are chosen by its owner.
+     * @param a the a_i's of the public key, stored as a flat long[m · n]-array.
+     * @param b the b_i's of the public key.
+     * @param q the modulus of the public key.
+     */
+    public void retrievePublicKey(long[] a, long[] b, long q){
+        setPublicKey(LWEPublicKey.fromMatrix(a, b, q));
+    }
+
+    /**
+     * Emulates the retrieval of a public key in its compressed form, where the a_i's are given by a seed.
+     * The a_i's are not expanded up front, but one at a time while encrypting.
+     * @param seed the seed from which the a_i's of the public key are expanded.
      * @param b the b_i's of the public key.
+     * @param q the modulus of the public key.
+     */
+    public void retrievePublicKey(byte[] seed, long[] b, long q){
+        setPublicKey(LWEPublicKey.fromSeed(seed, b, n, q));
+    }
+
+    /**
+     * Retrieves a public key from a file written by 'writePublicKey', see 'LWEPublicKey.read'.
+     * The number of equations, the dimension and the modulus are taken from the file.
+     * @param file the public key file.
+     * @throws IOException if the file cannot be read or does not hold a public key.
+     */
+    public void retrievePublicKey(Path file) throws IOException {
+        setPublicKey(LWEPublicKey.read(file));
+    }
+
+    /**
+     * Retrieves a public key, replacing the one held by the Party.
+     * Encryptors taken from the Party before keep encrypting under the previous key.
+     * @param publicKey the public key.
+     */
+    public void setPublicKey(LWEPublicKey publicKey){
+        this.publicKey = publicKey;
+        this.encryptor = new Encryptor(publicKey, randomness);
+        this.n = publicKey.n;
+        this.m = publicKey.m;
+        this.q = publicKey.q;
+    }
+
+    /**
+     * Writes the public key to a file, in the format read by 'retrievePublicKey(Path)'.
+     * A key generated by this Party is written as its seed and b_i's; a retrieved key is written with its a_i's.
+     * @param file the file to write - replaced if it exists.
+     * @throws IOException if the file cannot be written.
+     */
+    public void writePublicKey(Path file) throws IOException {
+        getPublicKey().write(file);
+    }
+
+    /**
+     * Writes the secret key to a file, in the format read by 'readSecretKey'.
+     * @param file the file to write - replaced if it exists.
+     * @throws IOException if the file cannot be written.
+     */
+    public void writeSecretKey(Path file) throws IOException {
+        getDecryptor().getSecretKey().write(file);
+    }
+
+    /**
+     * Reads a secret key from a file written by 'writeSecretKey', so this Party can decrypt with it.
+     * The dimension and the modulus are taken from the file.
+     * @param file the secret key file.
+     * @throws IOException if the file cannot be read or does not hold a secret key.
      */
-    public void retrievePublicKey(long[][] a, long[] b){
-        this.a = a;
-        this.b = b;
+    public void readSecretKey(Path file) throws IOException {
+        setSecretKey(LWESecretKey.read(file));
+    }
+
+    /**
+     * Sets the secret key decrypted with, replacing the one held by the Party.
+     * Decryptors taken from the Party before keep decrypting with the previous key.
+     * @param secretKey the secret key.
+     */
+    public void setSecretKey(LWESecretKey secretKey){
+        this.secretKey = secretKey;
+        this.keyPair = null;
+        this.decryptor = new Decryptor(secretKey);
+        this.n = secretKey.n;
+        this.q = secretKey.q;
     }
 
     /**
@@ -56,32 +291,42 @@ public class Party {
      * @param w is the bit to be encrypted.
      */
     public void encryptBit(int w){
-        if (w < 0 || w > 1){
-            throw new InputMismatchException("Invalid input for encryption - the input must be a bit, {0,1}.");
-        } else {
-            SecureRandom rand = new SecureRandom();
-            boolean[] b = new boolean[m];
-            for (int i = 0; i < m; i++) {
-                b[i] = rand.nextInt(2) == 1;
-            }
-            long[][] sum = new long[2][n];
-            for (int i = 0; i < m; i++) {
-                if (b[i]) {
-                    sum[0] = basicArrayAddition(sum[0], a[i]);
-                    sum[1][0] = mod((sum[1][0] + this.b[i]), q);
-                }
-            }
-            sum[1][0] = mod(sum[1][0] + ((long) Math.ceil(((double) q) / 2.0) * w), q);
-            encryptionOfABit = sum;
-        }
+        encryptionOfABit = getEncryptor().encryptBit(w);
+    }
+
+    /**
+     * Encrypts a bit into a caller-supplied ciphertext without allocating, see 'Encryptor.encryptBit'.
+     * @param w is the bit to be encrypted.
+     * @param ciphertext the ciphertext to overwrite with the encryption of w.
+     */
+    public void encryptBit(int w, Ciphertext ciphertext){
+        getEncryptor().encryptBit(w, ciphertext);
+    }
+
+    /**
+     * Encrypts every bit of a message in a single pass over the public key, see 'Encryptor.encryptBits'.
+     * @param message the bits to be encrypted, packed into bytes.
+     * @return Returns a ciphertext (u, v) per bit of the message.
+     */
+    public Ciphertext[] encryptBits(byte[] message){
+        return getEncryptor().encryptBits(message);
+    }
+
+    /**
+     * Encrypts every bit of a message into caller-supplied ciphertexts, see 'Encryptor.encryptBits'.
+     * @param message the bits to be encrypted, packed into bytes.
+     * @param ciphertexts the ciphertexts to overwrite - one per bit of the message.
+     */
+    public void encryptBits(byte[] message, Ciphertext[] ciphertexts){
+        getEncryptor().encryptBits(message, ciphertexts);
     }
 
     /**
      * Emulates the sending of a ciphertext over a network.
      * @return Returns the an encryption of a bit.
      */
-    public long[][] sendCiphertext(){
-        if (Arrays.deepEquals(encryptionOfABit, new long[2][])){
+    public Ciphertext sendCiphertext(){
+        if (encryptionOfABit == null){
             throw new NoSuchElementException("No bit has been encrypted - a ciphertext has to be computed before it can be sent.");
         } else {
             return encryptionOfABit;
@@ -91,17 +336,68 @@ public class Party {
     /**
      * The decryption function described in
      * On Lattices, Learning with Errors, Random Linear Codes, and Cryptography - Oded Regev (https://cims.nyu.edu/~regev/papers/qcrypto.pdf)
-     * The ciphertext is (u,v) - u = 'uv[0]', v = 'uv[1][0]'. 'vsu' = v - su, where s is the secret key.
+     * The ciphertext is (u,v). 'vsu' = v - su, where s is the secret key.
      *  @return Returns the bit encrypted.
      */
     public int decryptToBit(){
-        long vsu = mod(mod(uv[1][0], q) - mod((dotProduct(uv[0], secretKey)), q), q);
-        long qHalves = ((long) Math.ceil(((double) q) / 2.0));
-        if (vsu >  qHalves / 2 && vsu < qHalves + qHalves / 2){
-            return 1;
-        } else {
-            return 0;
+        return getDecryptor().decrypt(uv);
+    }
+
+    /**
+     * Decrypts a batch of ciphertexts as produced by 'encryptBits', see 'Decryptor.decryptToBits'.
+     * @param ciphertexts the tuples (u, v) to decrypt.
+     * @return Returns the bits encrypted, packed into bytes in the same order as 'encryptBits' expects them.
+     */
+    public byte[] decryptToBits(Ciphertext[] ciphertexts){
+        return getDecryptor().decryptToBits(ciphertexts);
+    }
+
+    /**
+     * Decrypts many ciphertexts at once, see 'Decryptor.decryptBatch'.
+     * @param u the u's of the ciphertexts, stored as a flat long[count · n]-array - entries must be in [0, q).
+     * @param v the v's of the ciphertexts.
+     * @return Returns the bits encrypted - bit l is bit (l mod 64) of the word l / 64.
+     */
+    public long[] decryptBatch(long[] u, long[] v){
+        return getDecryptor().decryptBatch(u, v);
+    }
+
+    /**
+     * Decrypts many ciphertexts at once with several threads, see 'Decryptor.decryptBatch'.
+     * @param u the u's of the ciphertexts, stored as a flat long[count · n]-array - entries must be in [0, q).
+     * @param v the v's of the ciphertexts.
+     * @param parallelism the number of threads decrypting blocks of ciphertexts.
+     * @return Returns the bits encrypted - bit l is bit (l mod 64) of the word l / 64.
+     */
+    public long[] decryptBatch(long[] u, long[] v, int parallelism){
+        return getDecryptor().decryptBatch(u, v, parallelism);
+    }
+
+    /**
+     * Sends a batch of ciphertexts over a channel, e.g. a socket or a file, in the packed binary format.
+     * @param ciphertexts the ciphertexts to send.
+     * @param channel the channel to write to.
+     * @throws IOException if the channel cannot be written.
+     */
+    public void sendCiphertexts(Ciphertext[] ciphertexts, WritableByteChannel channel) throws IOException {
+        ByteBuffer encoding = WireFormat.encodeCiphertexts(ciphertexts, ciphertexts.length, n, q.getQ());
+        while (encoding.hasRemaining()) {
+            channel.write(encoding);
+        }
+    }
+
+    /**
+     * Receives a batch of ciphertexts sent by 'sendCiphertexts'.
+     * @param channel the channel to read from.
+     * @return Returns the ciphertexts.
+     * @throws IOException if the channel cannot be read or does not hold ciphertexts under this Party's parameters.
+     */
+    public Ciphertext[] receiveCiphertexts(ReadableByteChannel channel) throws IOException {
+        Ciphertext[] ciphertexts = WireFormat.readCiphertexts(channel, n, q.getQ());
+        if (ciphertexts == null){
+            throw new IOException("Unexpected end of stream - no ciphertexts to receive.");
         }
+        return ciphertexts;
     }
 
     /**
@@ -109,76 +405,86 @@ public class Party {
      *  @param uv the tuple (u, v) to decrypt.
      *            u = ∑a_i, v = ∑(a_i * s + e_i) + ⌈q/2⌉ where i ∈ S defined by 'm' random bits.
      */
-    public void receiveCiphertext(long[][] uv){
+    public void receiveCiphertext(Ciphertext uv){
         this.uv = uv;
     }
 
+    /**
+     * The Encryptor of the public key held by the Party - safe to share between threads.
+     * @return Returns the Encryptor.
+     */
+    public Encryptor getEncryptor() {
+        if (encryptor == null){
+            throw new NoSuchElementException("No public key has been generated or retrieved - there is nothing to encrypt under.");
+        }
+        return encryptor;
+    }
+
+    /**
+     * The Decryptor of the secret key held by the Party - safe to share between threads.
+     * @return Returns the Decryptor.
+     */
+    public Decryptor getDecryptor() {
+        if (decryptor == null){
+            throw new NoSuchElementException("No keys have been generated - there is no secret key to decrypt with.");
+        }
+        return decryptor;
+    }
+
+    /**
+     * Simple getter method for the public key.
+     * @return Returns the public key held by the Party.
+     */
+    public LWEPublicKey getPublicKey() {
+        return getEncryptor().getPublicKey();
+    }
+
     /**
      * Used as holder of public keys and for the sake of printing - should not be considered part of the scheme.
-     * @return Returns the a_i's of the public key.
+     * @return Returns the a_i's of the public key as a flat long[m · n]-array - a_i starts at index i · n.
      */
-    public long[][] getAOfPublicKey() {
-        return a;
+    public long[] getAOfPublicKey() {
+        return getPublicKey().getA();
     }
 
     /**
      * Used as holder of public keys and for the sake of printing - should not be considered part of the scheme.
-     * @return Returns the b_i's of the public key.
+     * @return Returns the seed of the a_i's of the public key, or null if the a_i's were retrieved without a seed.
      */
-    public long[] getBOfPublicKey() {
-        return b;
+    public byte[] getSeedOfPublicKey() {
+        return getPublicKey().getSeed();
     }
 
     /**
-     * Method only used for the sake of printing - should not be considered part of the scheme.
-     * @return Returns the secret key.
+     * Used as holder of public keys and for the sake of printing - should not be considered part of the scheme.
+     * @return Returns the b_i's of the public key.
      */
-    public long[] getSecretKey() {
-        return secretKey;
+    public long[] getBOfPublicKey() {
+        return getPublicKey().getB();
     }
 
     /**
-     * A simple method for adding two array to one another.
-     * @param x the first array.
-     * @param y the second array.
-     * @return Returns [x_1 + y_1, x_2 + y_2, .., x_n + y_n].
+     * Used as holder of public keys and for the sake of printing - should not be considered part of the scheme.
+     * @return Returns the modulus of the public key.
      */
-    private long[] basicArrayAddition(long[] x, long[] y) {
-        long[] result = new long[x.length];
-        for (int i = 0; i < x.length; i++) {
-            result[i] = mod((x[i] + y[i]), q);
-        }
-        return result;
+    public long getQ() {
+        return q.getQ();
     }
 
     /**
-     * A simple method for computing the dot product of two vectors.
-     * @param u the first vector in the dot product - must be defined as an array of 'longs'.
-     * @param s the second vector in the dot product - must be defined as an array of 'longs'.
-     * @return Returns ∑u[l] · s[l] for l = [0, dim(u)]
+     * Used as holder of public keys and for the sake of printing - should not be considered part of the scheme.
+     * @return Returns the dimension of the keys.
      */
-    private long dotProduct(long[] u, long[] s) {
-        long sum = 0;
-        for (int i = 0; i < u.length; i++) {
-            sum = mod((sum + (u[i] * s[i])),q);
-        }
-        return sum;
+    public int getN() {
+        return n;
     }
 
     /**
-     * Simple method used to compute modulus.
-     * @param x a number.
-     * @param y the modulus.
-     * @return Returns x mod y.
+     * Method only used for the sake of printing - should not be considered part of the scheme.
+     * @return Returns the secret key.
      */
-    private long mod(long x, long y){
-        long result = x % y;
-        if (result < 0){
-            return result + y;
-        }
-        else {
-            return result;
-        }
+    public long[] getSecretKey() {
+        return secretKey == null ? null : secretKey.getS();
     }
 
     /**
@@ -3,6 +3,7 @@ import java.util.Scanner;
 
 public class PrintOfProtocol {
     private static int w, n, q;
+    private static boolean powerOfTwo;
     public static void main(String[] args) {
         if (args.length < 1) {
             Scanner in = new Scanner(System.in);
@@ -17,20 +18,39 @@ public class PrintOfProtocol {
             w = Integer.parseInt(args[0]);
             n = Integer.parseInt(args[1]);
             q = Integer.parseInt(args[2]);
+            powerOfTwo = args.length > 3 && Boolean.parseBoolean(args[3]);
         }
         System.out.println("The following has been registered as the bit, dimension, bit length of modulus:");
         System.out.println("w:" + w + ", n:" +  n + ", log_2(q):" + q);
-        Party p1 = new Party(n, q);
-        Party p2 = new Party(n, q);
+        Party p1 = new Party(n, q, powerOfTwo);
+        Party p2 = new Party(n, q, powerOfTwo);
         p1.generateKeys();
         System.out.println("The following key pair has been produced:");
         System.out.println("Secret key: " + Arrays.toString(p1.getSecretKey()));
-        System.out.println("Public key: " + Arrays.deepToString(p1.getAOfPublicKey()) + Arrays.toString(p1.getBOfPublicKey()));
-        p2.retrievePublicKey(p1.getAOfPublicKey(), p1.getBOfPublicKey());
+        System.out.println("Public key: " + Arrays.toString(p1.getSeedOfPublicKey()) + Arrays.toString(p1.getBOfPublicKey()));
+        System.out.println("Where the seed expands to the a_i's: " + rowsToString(p1.getAOfPublicKey(), n));
+        p2.retrievePublicKey(p1.getSeedOfPublicKey(), p1.getBOfPublicKey(), p1.getQ());
         p2.encryptBit(w);
         System.out.println("Using the public key, this encryption has been produced:");
-        System.out.println("(u, v): " + Arrays.deepToString(p2.sendCiphertext()));
+        System.out.println("(u, v): " + p2.sendCiphertext());
         p1.receiveCiphertext(p2.sendCiphertext());
         System.out.println("(u, v) has been decrypted to " + p1.decryptToBit());
     }
-}
\ No newline at end of file
+
+    /**
+     * Prints a flat row-major matrix one row at a time.
+     * @param a the matrix.
+     * @param n the length of a row.
+     * @return Returns [[a_1], [a_2], .., [a_m]].
+     */
+    private static String rowsToString(long[] a, int n) {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < a.length; i += n) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(Arrays.toString(Arrays.copyOfRange(a, i, i + n)));
+        }
+        return sb.append(']').toString();
+    }
+}
@@ -0,0 +1,22 @@
+/**
+ * The matrix A of a public key when it is not held as a flat array on the heap.
+ * Rows are produced one at a time when they are needed, e.g. while encrypting.
+ * Implementations must allow concurrent calls from several threads.
+ */
+interface PublicMatrix {
+
+    /**
+     * Produces a single row of the matrix.
+     * @param i the index of the row.
+     * @param dst the array to store the row in.
+     * @param offset the index of 'dst' at which to store the row.
+     */
+    void expandRow(int i, long[] dst, int offset);
+
+    /**
+     * Produces the first m rows of the matrix as a flat array.
+     * @param m the number of rows.
+     * @return Returns the a_i's as a flat long[m · n]-array - a_i starts at index i · n.
+     */
+    long[] expand(int m);
+}
@@ -0,0 +1,111 @@
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Random;
+
+/**
+ * The source of randomness of the simple LWE encryption scheme, shared by all the parties of a process.
+ * Every thread draws from its own buffered ChaCha20 generator, so drawing randomness neither seeds a new
+ * SecureRandom nor synchronises with other threads. The generators are keyed from a single seed source - a DRBG
+ * when available - and rekeyed from it every 'RESEED_INTERVAL' blocks of 64 bytes.
+ */
+public final class RandomnessProvider {
+    /**
+     * Number of 64-byte blocks a thread's generator produces before it is rekeyed - 4 MiB.
+     */
+    static final int RESEED_INTERVAL = 1 << 16;
+
+    private static final RandomnessProvider DEFAULT = new RandomnessProvider();
+
+    private final ThreadLocal<ChaChaPrg> generators;
+
+    /**
+     * Constructs a RandomnessProvider object seeded by a DRBG, or the default SecureRandom if no DRBG is available.
+     */
+    public RandomnessProvider() {
+        this(defaultSeedSource());
+    }
+
+    /**
+     * Constructs a RandomnessProvider object seeded by a given source.
+     * @param seedSource is the source of the keys of the per-thread generators - must be thread-safe.
+     */
+    public RandomnessProvider(SecureRandom seedSource) {
+        this.generators = ThreadLocal.withInitial(() -> new ChaChaPrg(seedSource, RESEED_INTERVAL));
+    }
+
+    /**
+     * The provider used by parties that are not given one explicitly.
+     * @return Returns the process-wide RandomnessProvider.
+     */
+    public static RandomnessProvider getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * The generator of the calling thread - may only be used by that thread.
+     * @return Returns the generator of the calling thread.
+     */
+    Random current() {
+        return generators.get();
+    }
+
+    /**
+     * Fills an array with random bytes.
+     * @param bytes the array to fill.
+     */
+    void nextBytes(byte[] bytes) {
+        generators.get().nextBytes(bytes);
+    }
+
+    /**
+     * Fills an array of words with random bits, e.g. selection vectors.
+     * @param words the array to fill.
+     * @param bits the number of random bits - the bits of 'words' from this index on are cleared.
+     */
+    void fillBits(long[] words, int bits) {
+        ChaChaPrg generator = generators.get();
+        int fullWords = bits >>> 6;
+        generator.nextLongs(words, 0, fullWords);
+        if ((bits & 63) != 0) {
+            words[fullWords] = generator.nextLong() & ((1L << (bits & 63)) - 1);
+            fullWords++;
+        }
+        for (int i = fullWords; i < words.length; i++) {
+            words[i] = 0;
+        }
+    }
+
+    /**
+     * Fills a part of an array with uniformly random elements of [0, q).
+     * Words are rejected if they fall in the incomplete last multiple of q, so no element is more likely than another.
+     * @param dst the array to fill.
+     * @param offset the first index to fill.
+     * @param length the number of elements.
+     * @param q the modulus.
+     */
+    void fillLongsMod(long[] dst, int offset, int length, Modulus q) {
+        ChaChaPrg generator = generators.get();
+        if (q.isPowerOfTwo()) {
+            for (int i = offset; i < offset + length; i++) {
+                dst[i] = q.reduce(generator.nextLong());
+            }
+            return;
+        }
+        long limit = Long.MAX_VALUE - Long.MAX_VALUE % q.getQ();
+        for (int i = offset; i < offset + length; i++) {
+            long x;
+            do {
+                x = generator.nextLong() >>> 1;
+            } while (x >= limit);
+            dst[i] = q.reduce(x);
+        }
+    }
+
+    private static SecureRandom defaultSeedSource() {
+        try {
+            return SecureRandom.getInstance("DRBG");
+        } catch (NoSuchAlgorithmException e) {
+            return new SecureRandom();
+        }
+    }
+}
@@ -0,0 +1,70 @@
+/**
+ * The matrix A of a public key, whose rows a_i are deterministically expanded from a 32-byte seed.
+ * Only the seed has to be stored and transferred; rows are expanded when they are needed, e.g. one at a time
+ * while encrypting, and row i is always the same for the same seed, dimension and modulus.
+ */
+final class SeededMatrix implements PublicMatrix {
+    /**
+     * The ChaCha20 domain of the rows of A.
+     */
+    static final int DOMAIN = 0x41;
+
+    private final byte[] seed;
+    private final int n;
+    private final Modulus q;
+    private final ThreadLocal<ChaChaPrg> prg;
+
+    /**
+     * Constructs a SeededMatrix object.
+     * @param seed is the 32-byte seed of the matrix.
+     * @param n is the dimension of a row.
+     * @param q is the modulus of the entries.
+     */
+    SeededMatrix(byte[] seed, int n, Modulus q) {
+        if (seed.length != ChaChaPrg.SEED_LENGTH) {
+            throw new IllegalArgumentException("Invalid seed - it must be " + ChaChaPrg.SEED_LENGTH + " bytes.");
+        }
+        this.seed = seed.clone();
+        this.n = n;
+        this.q = q;
+        this.prg = ThreadLocal.withInitial(() -> new ChaChaPrg(this.seed, DOMAIN, 0));
+    }
+
+    /**
+     * Simple getter method for the seed.
+     * @return Returns a copy of the seed.
+     */
+    byte[] getSeed() {
+        return seed.clone();
+    }
+
+    /**
+     * Expands a single row of the matrix.
+     * @param i the index of the row.
+     * @param dst the array to store the row in.
+     * @param offset the index of 'dst' at which to store the row.
+     */
+    @Override
+    public void expandRow(int i, long[] dst, int offset) {
+        ChaChaPrg rowPrg = prg.get();
+        rowPrg.seek(i);
+        rowPrg.nextLongs(dst, offset, n);
+        for (int j = offset; j < offset + n; j++) {
+            dst[j] = q.reduce(dst[j]);
+        }
+    }
+
+    /**
+     * Expands the first m rows of the matrix into a flat array.
+     * @param m the number of rows.
+     * @return Returns the a_i's as a flat long[m · n]-array - a_i starts at index i · n.
+     */
+    @Override
+    public long[] expand(int m) {
+        long[] a = new long[m * n];
+        for (int i = 0; i < m; i++) {
+            expandRow(i, a, i * n);
+        }
+        return a;
+    }
+}
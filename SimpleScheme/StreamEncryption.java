@@ -0,0 +1,177 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Encrypts and decrypts streams of any length with a Party, bit by bit.
+ * The input is read in chunks of 'CHUNK_BYTES' bytes, each chunk is encrypted by a pool of workers, and the
+ * ciphertexts of a chunk are written as one frame - a batch of ciphertexts in the format of 'WireFormat'.
+ * At most 'maxInFlight' chunks are read ahead of the chunk being written, so the heap used is bounded by the
+ * number of workers rather than by the length of the input, even though a ciphertext takes n + 1 coefficients per bit.
+ */
+public final class StreamEncryption implements AutoCloseable {
+    /**
+     * The number of bytes of plaintext encrypted into one frame.
+     */
+    public static final int CHUNK_BYTES = 64;
+
+    private final Party party;
+    private final ExecutorService workers;
+    private final int maxInFlight;
+    private final ThreadLocal<Ciphertext[]> ciphertexts;
+
+    /**
+     * Constructs a StreamEncryption object encrypting under the public key and decrypting with the secret key of a Party.
+     * @param party the Party whose keys are used - its Encryptor or Decryptor is taken when a stream is started.
+     * @param workers the number of threads encrypting or decrypting chunks.
+     */
+    public StreamEncryption(Party party, int workers) {
+        if (workers < 1) {
+            throw new IllegalArgumentException("At least one worker is needed.");
+        }
+        this.party = party;
+        this.workers = Executors.newFixedThreadPool(workers, runnable -> {
+            Thread thread = new Thread(runnable, "stream-encryption");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.maxInFlight = 2 * workers;
+        this.ciphertexts = new ThreadLocal<>();
+    }
+
+    /**
+     * Encrypts a stream.
+     * @param in the plaintext.
+     * @param out the stream to write the frames of ciphertexts to - not closed.
+     * @return Returns the number of bytes encrypted.
+     * @throws IOException if a stream cannot be read or written.
+     */
+    public long encrypt(InputStream in, OutputStream out) throws IOException {
+        return encrypt(Channels.newChannel(in), Channels.newChannel(out));
+    }
+
+    /**
+     * Encrypts a channel, e.g. a FileChannel.
+     * @param in the plaintext.
+     * @param out the channel to write the frames of ciphertexts to - not closed.
+     * @return Returns the number of bytes encrypted.
+     * @throws IOException if a channel cannot be read or written.
+     */
+    public long encrypt(ReadableByteChannel in, WritableByteChannel out) throws IOException {
+        Encryptor encryptor = party.getEncryptor();
+        ArrayDeque<Future<ByteBuffer>> inFlight = new ArrayDeque<>();
+        ByteBuffer chunk = ByteBuffer.allocate(CHUNK_BYTES);
+        long total = 0;
+        boolean ended = false;
+        while (!ended) {
+            ended = !fill(in, chunk);
+            if (chunk.position() > 0) {
+                byte[] message = Arrays.copyOf(chunk.array(), chunk.position());
+                total += message.length;
+                chunk.clear();
+                if (inFlight.size() == maxInFlight) {
+                    write(inFlight.poll(), out);
+                }
+                inFlight.add(workers.submit(() -> encryptChunk(encryptor, message)));
+            }
+        }
+        while (!inFlight.isEmpty()) {
+            write(inFlight.poll(), out);
+        }
+        return total;
+    }
+
+    /**
+     * Decrypts a stream written by 'encrypt'.
+     * @param in the frames of ciphertexts.
+     * @param out the stream to write the plaintext to - not closed.
+     * @return Returns the number of bytes decrypted.
+     * @throws IOException if a stream cannot be read or written, or does not hold ciphertexts under the Party's parameters.
+     */
+    public long decrypt(InputStream in, OutputStream out) throws IOException {
+        return decrypt(Channels.newChannel(in), Channels.newChannel(out));
+    }
+
+    /**
+     * Decrypts a channel written by 'encrypt'.
+     * @param in the frames of ciphertexts.
+     * @param out the channel to write the plaintext to - not closed.
+     * @return Returns the number of bytes decrypted.
+     * @throws IOException if a channel cannot be read or written, or does not hold ciphertexts under the Party's parameters.
+     */
+    public long decrypt(ReadableByteChannel in, WritableByteChannel out) throws IOException {
+        Decryptor decryptor = party.getDecryptor();
+        LWESecretKey key = decryptor.getSecretKey();
+        ArrayDeque<Future<ByteBuffer>> inFlight = new ArrayDeque<>();
+        long total = 0;
+        Ciphertext[] frame;
+        while ((frame = WireFormat.readCiphertexts(in, key.getN(), key.getQ())) != null) {
+            Ciphertext[] received = frame;
+            total += received.length / 8;
+            if (inFlight.size() == maxInFlight) {
+                write(inFlight.poll(), out);
+            }
+            inFlight.add(workers.submit(() -> ByteBuffer.wrap(decryptor.decryptToBits(received))));
+        }
+        while (!inFlight.isEmpty()) {
+            write(inFlight.poll(), out);
+        }
+        return total;
+    }
+
+    /**
+     * Stops the workers.
+     */
+    @Override
+    public void close() {
+        workers.shutdown();
+    }
+
+    private ByteBuffer encryptChunk(Encryptor encryptor, byte[] message) {
+        LWEPublicKey key = encryptor.getPublicKey();
+        Ciphertext[] chunk = ciphertexts.get();
+        if (chunk == null || chunk[0].u.length != key.getN()) {
+            chunk = new Ciphertext[CHUNK_BYTES * 8];
+            for (int l = 0; l < chunk.length; l++) {
+                chunk[l] = new Ciphertext(key.getN());
+            }
+            ciphertexts.set(chunk);
+        }
+        encryptor.encryptBits(message, chunk);
+        return WireFormat.encodeCiphertexts(chunk, message.length * 8, key.getN(), key.getQ());
+    }
+
+    private static boolean fill(ReadableByteChannel in, ByteBuffer chunk) throws IOException {
+        while (chunk.hasRemaining()) {
+            if (in.read(chunk) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void write(Future<ByteBuffer> pending, WritableByteChannel out) throws IOException {
+        ByteBuffer buffer;
+        try {
+            buffer = pending.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a chunk.", e);
+        } catch (ExecutionException e) {
+            throw new IOException("A chunk could not be processed.", e.getCause());
+        }
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+    }
+}
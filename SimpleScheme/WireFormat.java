@@ -0,0 +1,493 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The versioned binary format of keys and ciphertexts of the simple LWE encryption scheme.
+ * Every encoding starts with a header:
+ * magic "RLWE" (4 bytes), version (1), type (1), reserved (2), q (8), n (4), count (4),
+ * where count is m for keys and the number of ciphertexts for a batch of ciphertexts.
+ * The header is followed by the coefficients, each packed into ⌈log_2(q)⌉ bits, least significant bit first,
+ * in little-endian 64-bit words - the last word is padded with zeros. A seeded public key has its 32-byte seed
+ * between the header and the coefficients. Coefficient l of a packed sequence can be read without reading the ones
+ * before it, which is what allows a memory-mapped public key to be used for encryption directly.
+ */
+final class WireFormat {
+    static final int MAGIC = 0x45574C52;
+    static final byte VERSION = 1;
+    static final int HEADER_SIZE = 24;
+
+    /**
+     * The secret key s - n coefficients, count = 0.
+     */
+    static final byte SECRET_KEY = 1;
+
+    /**
+     * A public key given by the seed of its a_i's - the seed followed by the m coefficients b_i.
+     */
+    static final byte SEEDED_PUBLIC_KEY = 2;
+
+    /**
+     * A public key given by its a_i's - the m · n coefficients of the a_i's followed by the m coefficients b_i.
+     */
+    static final byte PUBLIC_KEY = 3;
+
+    /**
+     * A batch of count ciphertexts - the n coefficients of u followed by v, for each ciphertext.
+     */
+    static final byte CIPHERTEXTS = 4;
+
+    /**
+     * The decryptions of a batch of count ciphertexts - bit l is bit (l mod 64) of word l / 64.
+     */
+    static final byte BITS = 5;
+
+    private WireFormat() {
+    }
+
+    /**
+     * The header of an encoding.
+     */
+    static final class Header {
+        final byte type;
+        final long q;
+        final int n;
+        final int count;
+
+        Header(byte type, long q, int n, int count) {
+            this.type = type;
+            this.q = q;
+            this.n = n;
+            this.count = count;
+        }
+
+        /**
+         * The number of bits of each packed coefficient.
+         * @return Returns ⌈log_2(q)⌉.
+         */
+        int bits() {
+            return bitsPerCoefficient(q);
+        }
+
+        /**
+         * The modulus of the encoded object.
+         * @return Returns a Modulus object for q.
+         * @throws IOException if q is not a valid modulus.
+         */
+        Modulus modulus() throws IOException {
+            try {
+                return new Modulus(q);
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Malformed header - " + e.getMessage(), e);
+            }
+        }
+
+        /**
+         * The number of bytes following the header.
+         * @return Returns the size of the payload of the encoding.
+         */
+        long payloadSize() {
+            switch (type) {
+                case SECRET_KEY:
+                    return packedSize(n, bits());
+                case SEEDED_PUBLIC_KEY:
+                    return ChaChaPrg.SEED_LENGTH + packedSize(count, bits());
+                case PUBLIC_KEY:
+                    return packedSize((long) count * n, bits()) + packedSize(count, bits());
+                case CIPHERTEXTS:
+                    return packedSize((long) count * (n + 1), bits());
+                default:
+                    return packedSize(count, 1);
+            }
+        }
+    }
+
+    /**
+     * The number of bits needed to store an element of [0, q).
+     * @param q the modulus.
+     * @return Returns ⌈log_2(q)⌉.
+     */
+    static int bitsPerCoefficient(long q) {
+        return 64 - Long.numberOfLeadingZeros(q - 1);
+    }
+
+    /**
+     * The size of a packed sequence of coefficients.
+     * @param count the number of coefficients.
+     * @param bits the number of bits of each coefficient.
+     * @return Returns the number of bytes - a multiple of 8.
+     */
+    static long packedSize(long count, int bits) {
+        return ((count * bits + 63) >>> 6) * Long.BYTES;
+    }
+
+    /**
+     * Allocates a buffer for an encoding and writes its header.
+     * @param type the type of the encoding.
+     * @param q the modulus.
+     * @param n the dimension.
+     * @param count m for keys or the number of ciphertexts.
+     * @param payloadSize the number of bytes following the header.
+     * @return Returns a little-endian buffer positioned after the header.
+     */
+    static ByteBuffer allocate(byte type, long q, int n, int count, long payloadSize) {
+        if (HEADER_SIZE + payloadSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Too large to encode in a single buffer - " + payloadSize + " bytes.");
+        }
+        ByteBuffer out = ByteBuffer.allocate((int) (HEADER_SIZE + payloadSize)).order(ByteOrder.LITTLE_ENDIAN);
+        out.putInt(MAGIC).put(VERSION).put(type).putShort((short) 0).putLong(q).putInt(n).putInt(count);
+        return out;
+    }
+
+    /**
+     * Reads and validates the header of an encoding.
+     * @param in a little-endian buffer positioned at the header - positioned after it on return.
+     * @param expectedTypes the types accepted.
+     * @return Returns the header.
+     * @throws IOException if the buffer does not hold an encoding of an accepted type and the current version,
+     * or the header holds a dimension below 1, a negative count or a modulus below 2.
+     */
+    static Header readHeader(ByteBuffer in, byte... expectedTypes) throws IOException {
+        if (in.remaining() < HEADER_SIZE || in.getInt() != MAGIC) {
+            throw new IOException("Not an encoding of the simple LWE encryption scheme.");
+        }
+        byte version = in.get();
+        if (version != VERSION) {
+            throw new IOException("Unsupported version " + version + " - only version " + VERSION + " can be read.");
+        }
+        byte type = in.get();
+        in.getShort();
+        Header header = new Header(type, in.getLong(), in.getInt(), in.getInt());
+        if (header.n < 1 || header.count < 0 || header.q < 2) {
+            throw new IOException("Malformed header - n = " + header.n + ", count = " + header.count + ", q = " + header.q + ".");
+        }
+        for (byte expected : expectedTypes) {
+            if (type == expected) {
+                return header;
+            }
+        }
+        throw new IOException("Unexpected type " + type + " of encoding.");
+    }
+
+    /**
+     * Packs coefficients into consecutive little-endian words of a buffer.
+     */
+    static final class Packer {
+        private final ByteBuffer out;
+        private final int bits;
+        private long word;
+        private int used;
+
+        /**
+         * Constructs a Packer object writing at the current position of a buffer.
+         * @param out a little-endian buffer.
+         * @param bits the number of bits of each coefficient.
+         */
+        Packer(ByteBuffer out, int bits) {
+            this.out = out;
+            this.bits = bits;
+        }
+
+        /**
+         * Appends a coefficient.
+         * @param value an element of [0, 2^bits).
+         */
+        void put(long value) {
+            word |= value << used;
+            used += bits;
+            if (used >= 64) {
+                out.putLong(word);
+                used -= 64;
+                word = used == 0 ? 0 : value >>> (bits - used);
+            }
+        }
+
+        /**
+         * Appends a part of an array of coefficients.
+         * @param values the coefficients.
+         * @param offset the index of the first coefficient.
+         * @param length the number of coefficients.
+         */
+        void put(long[] values, int offset, int length) {
+            for (int i = offset; i < offset + length; i++) {
+                put(values[i]);
+            }
+        }
+
+        /**
+         * Writes the last, partially filled word.
+         */
+        void finish() {
+            if (used > 0) {
+                out.putLong(word);
+                word = 0;
+                used = 0;
+            }
+        }
+    }
+
+    /**
+     * Unpacks consecutive coefficients of a packed sequence.
+     * Only absolute gets are used, so the buffer may be shared by several threads.
+     * @param packed the packed sequence, starting at index 0 of the buffer.
+     * @param first the index of the first coefficient to unpack.
+     * @param bits the number of bits of each coefficient.
+     * @param dst the array to store the coefficients in.
+     * @param offset the index of 'dst' of the first coefficient.
+     * @param length the number of coefficients.
+     */
+    static void unpack(ByteBuffer packed, long first, int bits, long[] dst, int offset, int length) {
+        long mask = (1L << bits) - 1;
+        long bit = first * bits;
+        for (int i = offset; i < offset + length; i++) {
+            int index = (int) ((bit >>> 6) << 3);
+            int shift = (int) (bit & 63);
+            long value = packed.getLong(index) >>> shift;
+            if (shift + bits > 64) {
+                value |= packed.getLong(index + Long.BYTES) << (64 - shift);
+            }
+            dst[i] = value & mask;
+            bit += bits;
+        }
+    }
+
+    /**
+     * Encodes a secret key.
+     * @param s the secret key.
+     * @param q the modulus.
+     * @return Returns the encoding, flipped for reading.
+     */
+    static ByteBuffer encodeSecretKey(long[] s, long q) {
+        int bits = bitsPerCoefficient(q);
+        ByteBuffer out = allocate(SECRET_KEY, q, s.length, 0, packedSize(s.length, bits));
+        Packer packer = new Packer(out, bits);
+        packer.put(s, 0, s.length);
+        packer.finish();
+        return out.flip();
+    }
+
+    /**
+     * Encodes a public key, either by the seed of its a_i's or by the a_i's themselves.
+     * @param seed the seed of the a_i's, or null if the a_i's are given.
+     * @param a the a_i's as a flat long[m · n]-array, or null if the seed is given.
+     * @param b the b_i's.
+     * @param n the dimension.
+     * @param q the modulus.
+     * @return Returns the encoding, flipped for reading.
+     */
+    static ByteBuffer encodePublicKey(byte[] seed, long[] a, long[] b, int n, long q) {
+        int bits = bitsPerCoefficient(q);
+        int m = b.length;
+        ByteBuffer out;
+        if (seed != null) {
+            out = allocate(SEEDED_PUBLIC_KEY, q, n, m, seed.length + packedSize(m, bits));
+            out.put(seed);
+        } else {
+            out = allocate(PUBLIC_KEY, q, n, m, packedSize((long) m * n, bits) + packedSize(m, bits));
+            Packer packer = new Packer(out, bits);
+            packer.put(a, 0, m * n);
+            packer.finish();
+        }
+        Packer packer = new Packer(out, bits);
+        packer.put(b, 0, m);
+        packer.finish();
+        return out.flip();
+    }
+
+    /**
+     * Encodes a batch of ciphertexts.
+     * @param ciphertexts the ciphertexts.
+     * @param length the number of ciphertexts to encode, starting from the first.
+     * @param n the dimension.
+     * @param q the modulus.
+     * @return Returns the encoding, flipped for reading.
+     */
+    static ByteBuffer encodeCiphertexts(Ciphertext[] ciphertexts, int length, int n, long q) {
+        int bits = bitsPerCoefficient(q);
+        ByteBuffer out = allocate(CIPHERTEXTS, q, n, length, packedSize((long) length * (n + 1), bits));
+        Packer packer = new Packer(out, bits);
+        for (int l = 0; l < length; l++) {
+            packer.put(ciphertexts[l].u, 0, n);
+            packer.put(ciphertexts[l].v);
+        }
+        packer.finish();
+        return out.flip();
+    }
+
+    /**
+     * Writes an encoding to a file.
+     * @param file the file to write - replaced if it exists.
+     * @param encoding the encoding, flipped for reading.
+     * @throws IOException if the file cannot be written.
+     */
+    static void writeFile(Path file, ByteBuffer encoding) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (encoding.hasRemaining()) {
+                channel.write(encoding);
+            }
+        }
+    }
+
+    /**
+     * Reads a whole encoding of one of the given types from a channel.
+     * @param channel the channel to read from.
+     * @param expectedTypes the types accepted.
+     * @return Returns a little-endian buffer holding the header and the payload, positioned at the header,
+     * or null if the channel ended before the encoding.
+     * @throws IOException if the channel cannot be read, ends within the encoding or does not hold an accepted encoding.
+     */
+    static ByteBuffer readEncoding(ReadableByteChannel channel, byte... expectedTypes) throws IOException {
+        return readEncoding(channel, 0, 0, Integer.MAX_VALUE, expectedTypes);
+    }
+
+    /**
+     * Reads a whole encoding of one of the given types from a channel, checking its parameters before the payload is
+     * allocated - for channels whose peer is not trusted.
+     * @param channel the channel to read from.
+     * @param n the dimension the encoding must have - or 0 for any.
+     * @param q the modulus the encoding must have - or 0 for any.
+     * @param maxCount the largest count accepted.
+     * @param expectedTypes the types accepted.
+     * @return Returns a little-endian buffer holding the header and the payload, positioned at the header,
+     * or null if the channel ended before the encoding.
+     * @throws IOException if the channel cannot be read, ends within the encoding, does not hold an accepted encoding
+     * or the encoding has other parameters or a larger count.
+     */
+    static ByteBuffer readEncoding(ReadableByteChannel channel, int n, long q, int maxCount, byte... expectedTypes)
+            throws IOException {
+        ByteBuffer headerBytes = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        if (!readFully(channel, headerBytes, true)) {
+            return null;
+        }
+        Header header = readHeader(headerBytes.flip(), expectedTypes);
+        if (n != 0 || q != 0) {
+            checkParameters(header, n, q);
+        }
+        if (header.count > maxCount) {
+            throw new IOException("Too many elements - " + header.count + " sent, at most " + maxCount + " accepted.");
+        }
+        long size = header.payloadSize();
+        if (HEADER_SIZE + size > Integer.MAX_VALUE) {
+            throw new IOException("Too large to read into a single buffer - " + size + " bytes.");
+        }
+        ByteBuffer encoding = ByteBuffer.allocate((int) (HEADER_SIZE + size)).order(ByteOrder.LITTLE_ENDIAN);
+        encoding.put(headerBytes.flip());
+        readFully(channel, encoding, false);
+        return encoding.flip();
+    }
+
+    /**
+     * Reads a batch of ciphertexts encoded by 'encodeCiphertexts' from a channel.
+     * @param channel the channel to read from.
+     * @param n the dimension the ciphertexts must have.
+     * @param q the modulus the ciphertexts must have.
+     * @return Returns the ciphertexts, or null if the channel ended before the batch.
+     * @throws IOException if the channel cannot be read, ends within the batch or does not hold ciphertexts
+     * under the given parameters.
+     */
+    static Ciphertext[] readCiphertexts(ReadableByteChannel channel, int n, long q) throws IOException {
+        ByteBuffer encoding = readEncoding(channel, n, q, Integer.MAX_VALUE, CIPHERTEXTS);
+        if (encoding == null) {
+            return null;
+        }
+        Header header = readHeader(encoding, CIPHERTEXTS);
+        return decodeCiphertexts(header, encoding.slice().order(ByteOrder.LITTLE_ENDIAN));
+    }
+
+    /**
+     * Checks that an encoding is under given parameters.
+     * @param header the header of the encoding.
+     * @param n the dimension the encoding must have.
+     * @param q the modulus the encoding must have.
+     * @throws IOException if the encoding has other parameters.
+     */
+    static void checkParameters(Header header, int n, long q) throws IOException {
+        if (header.n != n || header.q != q) {
+            throw new IOException("The encoding is not under the expected parameters - n = " + header.n
+                    + ", q = " + header.q + ".");
+        }
+    }
+
+    private static boolean readFully(ReadableByteChannel channel, ByteBuffer buffer, boolean endAllowed)
+            throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                if (endAllowed && buffer.position() == 0) {
+                    return false;
+                }
+                throw new IOException("Unexpected end of stream - " + buffer.remaining() + " bytes missing.");
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Decodes the coefficients of a batch of ciphertexts.
+     * @param header the header of the batch.
+     * @param packed the coefficients following the header, starting at index 0 of the buffer.
+     * @return Returns the ciphertexts.
+     */
+    static Ciphertext[] decodeCiphertexts(Header header, ByteBuffer packed) {
+        int n = header.n;
+        Ciphertext[] ciphertexts = new Ciphertext[header.count];
+        long[] v = new long[1];
+        for (int l = 0; l < ciphertexts.length; l++) {
+            long[] u = new long[n];
+            unpack(packed, (long) l * (n + 1), header.bits(), u, 0, n);
+            unpack(packed, (long) l * (n + 1) + n, header.bits(), v, 0, 1);
+            ciphertexts[l] = new Ciphertext(u, v[0]);
+        }
+        return ciphertexts;
+    }
+
+    /**
+     * Decodes the coefficients of a batch of ciphertexts into the matrix of their u's and the vector of their v's,
+     * as taken by 'Decryptor.decryptBatch'.
+     * @param header the header of the batch.
+     * @param packed the coefficients following the header, starting at index 0 of the buffer.
+     * @param u the array to store the u's in - a flat long[count · n]-array.
+     * @param v the array to store the v's in.
+     */
+    static void decodeCiphertexts(Header header, ByteBuffer packed, long[] u, long[] v) {
+        int n = header.n;
+        for (int l = 0; l < header.count; l++) {
+            unpack(packed, (long) l * (n + 1), header.bits(), u, l * n, n);
+            unpack(packed, (long) l * (n + 1) + n, header.bits(), v, l, 1);
+        }
+    }
+
+    /**
+     * Encodes the decryptions of a batch of ciphertexts.
+     * @param bits the bits, as returned by 'Decryptor.decryptBatch'.
+     * @param count the number of bits.
+     * @param n the dimension of the ciphertexts.
+     * @param q the modulus of the ciphertexts.
+     * @return Returns the encoding, flipped for reading.
+     */
+    static ByteBuffer encodeBits(long[] bits, int count, int n, long q) {
+        ByteBuffer out = allocate(BITS, q, n, count, packedSize(count, 1));
+        for (int word = 0; word < (count + 63) >>> 6; word++) {
+            out.putLong(bits[word]);
+        }
+        return out.flip();
+    }
+
+    /**
+     * Decodes the decryptions of a batch of ciphertexts.
+     * @param header the header of the encoding.
+     * @param packed the words following the header, starting at index 0 of the buffer.
+     * @return Returns the bits - bit l is bit (l mod 64) of word l / 64.
+     */
+    static long[] decodeBits(Header header, ByteBuffer packed) {
+        long[] bits = new long[(header.count + 63) >>> 6];
+        for (int word = 0; word < bits.length; word++) {
+            bits[word] = packed.getLong(word * Long.BYTES);
+        }
+        return bits;
+    }
+}
@@ -0,0 +1,155 @@
+import java.util.InputMismatchException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Encrypts bits in two phases - offline and online.
+ * Everything but the message term of an encryption (u, v) = (∑a_i, ∑b_i + ⌈q/2⌉ · w) is independent of the bit w,
+ * so background workers precompute encryptions of 0 into a bounded lock-free queue, and encrypting a bit online only
+ * takes one of them and adds ⌈q/2⌉ · w to v. Every precomputed encryption is handed out once.
+ * When the queue runs dry the bit is encrypted directly, as by the Encryptor.
+ */
+public final class ZeroEncryptionPool implements AutoCloseable {
+    /**
+     * The largest number of encryptions of 0 a worker computes in one pass over the public key.
+     */
+    private static final int MAX_BLOCK_BITS = 64;
+
+    private final Encryptor encryptor;
+    private final Modulus q;
+    private final long qHalves;
+    private final int capacity, blockBytes;
+    private final Queue<Ciphertext> zeros = new ConcurrentLinkedQueue<>();
+    /**
+     * The number of encryptions of 0 that are queued or being computed - never more than the capacity.
+     */
+    private final AtomicInteger reserved = new AtomicInteger();
+    private final Thread[] workers;
+    private volatile boolean closed;
+    /**
+     * The first failure of a worker - it stops all workers and is rethrown by 'encryptBit'.
+     */
+    private volatile Throwable failure;
+
+    /**
+     * Constructs a ZeroEncryptionPool object and starts its workers.
+     * @param encryptor the Encryptor whose public key is encrypted under.
+     * @param capacity the largest number of precomputed encryptions of 0 - at least 8.
+     * @param threads the number of workers precomputing encryptions of 0.
+     */
+    public ZeroEncryptionPool(Encryptor encryptor, int capacity, int threads) {
+        if (capacity < 8 || threads < 1) {
+            throw new IllegalArgumentException("Invalid sizes - the capacity must be at least 8 and at least one worker is needed.");
+        }
+        this.encryptor = encryptor;
+        this.q = encryptor.getPublicKey().q;
+        this.qHalves = (long) Math.ceil(((double) q.getQ()) / 2.0);
+        this.capacity = capacity;
+        this.blockBytes = Math.min(MAX_BLOCK_BITS, capacity) / 8;
+        this.workers = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            workers[i] = new Thread(this::precompute, "zero-encryption");
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+    }
+
+    /**
+     * Encrypts a bit online from a precomputed encryption of 0, or directly if none is left.
+     * @param w is the bit to be encrypted.
+     * @return Returns the encryption (u, v) of w.
+     * @throws IllegalStateException if a worker failed to precompute encryptions of 0.
+     */
+    public Ciphertext encryptBit(int w) {
+        if (w < 0 || w > 1) {
+            throw new InputMismatchException("Invalid input for encryption - the input must be a bit, {0,1}.");
+        }
+        if (failure != null) {
+            throw new IllegalStateException("Precomputing encryptions of 0 failed.", failure);
+        }
+        Ciphertext ciphertext = zeros.poll();
+        if (ciphertext == null) {
+            return encryptor.encryptBit(w);
+        }
+        reserved.decrementAndGet();
+        wakeWorkers();
+        ciphertext.v = q.add(ciphertext.v, qHalves * w);
+        return ciphertext;
+    }
+
+    /**
+     * Encrypts every bit of a message online.
+     * Bit l of the message is bit (l mod 8) of message[l / 8], counting from the least significant bit.
+     * @param message the bits to be encrypted, packed into bytes.
+     * @return Returns a ciphertext (u, v) per bit of the message.
+     */
+    public Ciphertext[] encryptBits(byte[] message) {
+        Ciphertext[] ciphertexts = new Ciphertext[message.length * 8];
+        for (int l = 0; l < ciphertexts.length; l++) {
+            ciphertexts[l] = encryptBit((message[l >>> 3] >>> (l & 7)) & 1);
+        }
+        return ciphertexts;
+    }
+
+    /**
+     * The number of precomputed encryptions of 0 ready to be taken.
+     * @return Returns the number of queued encryptions.
+     */
+    public int available() {
+        return zeros.size();
+    }
+
+    /**
+     * Stops the workers - encryptions still queued can be taken, after which bits are encrypted directly.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for (Thread worker : workers) {
+            LockSupport.unpark(worker);
+        }
+    }
+
+    /**
+     * The loop of a worker - reserves room for a block of encryptions of 0 in the queue, computes them in one pass over
+     * the public key and queues them, or parks until encryptions are taken if the queue is full.
+     * If computing a block fails its room is released and the failure is recorded, which stops all workers.
+     */
+    private void precompute() {
+        byte[] message = new byte[blockBytes];
+        int block = blockBytes * 8;
+        while (!closed) {
+            int current = reserved.get();
+            if (current + block > capacity) {
+                LockSupport.park(this);
+                continue;
+            }
+            if (reserved.compareAndSet(current, current + block)) {
+                Ciphertext[] ciphertexts;
+                try {
+                    ciphertexts = encryptor.encryptBits(message);
+                } catch (RuntimeException | Error e) {
+                    reserved.addAndGet(-block);
+                    if (failure == null) {
+                        failure = e;
+                    }
+                    close();
+                    return;
+                }
+                for (Ciphertext ciphertext : ciphertexts) {
+                    zeros.offer(ciphertext);
+                }
+            }
+        }
+    }
+
+    private void wakeWorkers() {
+        if (reserved.get() + blockBytes * 8 <= capacity) {
+            for (Thread worker : workers) {
+                LockSupport.unpark(worker);
+            }
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package crycom.benchmarks;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.math.BigInteger;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of the leveled BGV scheme - the basic scheme of EParty and the leveled operations of FHEParty.
+ * The scheme lives in the default package, which cannot be imported, so its public members are reached through
+ * method handles looked up once when the class is loaded. The handles are adapted to Object in place of the classes
+ * of the scheme and called with invokeExact, so no arguments are boxed and the JIT inlines them as constants.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LeveledFheBenchmark {
+    private static final MethodHandle NEW_EPARTY;
+    private static final MethodHandle SECRET_KEY_GEN;
+    private static final MethodHandle PUBLIC_KEY_GEN;
+    private static final MethodHandle SET_PUBLIC_KEY;
+    private static final MethodHandle E_ENCRYPT;
+    private static final MethodHandle E_DECRYPT;
+    private static final MethodHandle E_GET_M;
+    private static final MethodHandle E_GET_N;
+    private static final MethodHandle NEW_FHEPARTY;
+    private static final MethodHandle KEY_GEN;
+    private static final MethodHandle FHE_ENCRYPT;
+    private static final MethodHandle ADD_CIPHERS;
+    private static final MethodHandle MULT_CIPHERS;
+    private static final MethodHandle REFRESH;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            Class<?> eParty = Class.forName("EParty");
+            Class<?> fheParty = Class.forName("FHEParty");
+            Class<?> rnsVector = Class.forName("RnsVector");
+            NEW_EPARTY = lookup.findConstructor(eParty, MethodType.methodType(void.class, int.class, int.class, int.class))
+                    .asType(MethodType.methodType(Object.class, int.class, int.class, int.class));
+            SECRET_KEY_GEN = lookup.findVirtual(eParty, "secretKeyGen", MethodType.methodType(void.class))
+                    .asType(MethodType.methodType(void.class, Object.class));
+            PUBLIC_KEY_GEN = lookup.findVirtual(eParty, "publicKeyGen", MethodType.methodType(BigInteger[][].class, int.class, int.class))
+                    .asType(MethodType.methodType(BigInteger[][].class, Object.class, int.class, int.class));
+            SET_PUBLIC_KEY = lookup.findVirtual(eParty, "setPublicKey", MethodType.methodType(void.class, BigInteger[][].class))
+                    .asType(MethodType.methodType(void.class, Object.class, BigInteger[][].class));
+            E_ENCRYPT = lookup.findVirtual(eParty, "encrypt", MethodType.methodType(BigInteger[].class, int.class))
+                    .asType(MethodType.methodType(BigInteger[].class, Object.class, int.class));
+            E_DECRYPT = lookup.findVirtual(eParty, "decrypt", MethodType.methodType(int.class, BigInteger[].class))
+                    .asType(MethodType.methodType(int.class, Object.class, BigInteger[].class));
+            E_GET_M = lookup.findVirtual(eParty, "getM", MethodType.methodType(int.class))
+                    .asType(MethodType.methodType(int.class, Object.class));
+            E_GET_N = lookup.findVirtual(eParty, "getN", MethodType.methodType(int.class))
+                    .asType(MethodType.methodType(int.class, Object.class));
+            NEW_FHEPARTY = lookup.findConstructor(fheParty, MethodType.methodType(void.class, int.class, int.class, int.class))
+                    .asType(MethodType.methodType(Object.class, int.class, int.class, int.class));
+            KEY_GEN = lookup.findVirtual(fheParty, "keyGen", MethodType.methodType(void.class))
+                    .asType(MethodType.methodType(void.class, Object.class));
+            FHE_ENCRYPT = lookup.findVirtual(fheParty, "encrypt", MethodType.methodType(rnsVector, int.class))
+                    .asType(MethodType.methodType(Object.class, Object.class, int.class));
+            ADD_CIPHERS = lookup.findVirtual(fheParty, "addCiphers", MethodType.methodType(rnsVector, rnsVector, rnsVector))
+                    .asType(MethodType.methodType(Object.class, Object.class, Object.class, Object.class));
+            MULT_CIPHERS = lookup.findVirtual(fheParty, "multCiphers", MethodType.methodType(rnsVector, rnsVector, rnsVector))
+                    .asType(MethodType.methodType(Object.class, Object.class, Object.class, Object.class));
+            REFRESH = lookup.findVirtual(fheParty, "refresh", MethodType.methodType(rnsVector, rnsVector))
+                    .asType(MethodType.methodType(Object.class, Object.class, Object.class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /**
+     * The basic scheme, parameterised over the security parameter and the bit length of the modulus.
+     */
+    @State(Scope.Thread)
+    public static class Basic {
+        @Param({"4", "8", "16"})
+        public int lambda;
+
+        @Param({"16", "32", "64"})
+        public int mu;
+
+        @Param({"3"})
+        public int chi;
+
+        Object party;
+        int m, n;
+        BigInteger[] ciphertext;
+
+        @Setup(Level.Trial)
+        public void setUp() throws Throwable {
+            party = (Object) NEW_EPARTY.invokeExact(lambda, mu, chi);
+            SECRET_KEY_GEN.invokeExact(party);
+            m = (int) E_GET_M.invokeExact(party);
+            n = (int) E_GET_N.invokeExact(party);
+            SET_PUBLIC_KEY.invokeExact(party, (BigInteger[][]) PUBLIC_KEY_GEN.invokeExact(party, m, n));
+            ciphertext = (BigInteger[]) E_ENCRYPT.invokeExact(party, 1);
+        }
+    }
+
+    /**
+     * The leveled scheme, parameterised over the security parameter and the number of levels L together - the
+     * key-switching matrices only fit in memory for lambda = 1 with L ≤ 2 and lambda = 2 with L = 1, see 'FHEParty'.
+     */
+    @State(Scope.Thread)
+    public static class Leveled {
+        @Param({"1:1", "1:2", "2:1"})
+        public String lambdaAndLevels;
+
+        @Param({"3"})
+        public int chi;
+
+        Object party;
+        Object c1, c2;
+
+        @Setup(Level.Trial)
+        public void setUp() throws Throwable {
+            String[] parameters = lambdaAndLevels.split(":");
+            party = (Object) NEW_FHEPARTY.invokeExact(Integer.parseInt(parameters[0]), chi, Integer.parseInt(parameters[1]));
+            KEY_GEN.invokeExact(party);
+            c1 = (Object) FHE_ENCRYPT.invokeExact(party, 1);
+            c2 = (Object) FHE_ENCRYPT.invokeExact(party, 0);
+        }
+    }
+
+    @Benchmark
+    public Object publicKeyGen(Basic state) throws Throwable {
+        return (BigInteger[][]) PUBLIC_KEY_GEN.invokeExact(state.party, state.m, state.n);
+    }
+
+    @Benchmark
+    public Object encrypt(Basic state) throws Throwable {
+        return (BigInteger[]) E_ENCRYPT.invokeExact(state.party, 1);
+    }
+
+    @Benchmark
+    public int decrypt(Basic state) throws Throwable {
+        return (int) E_DECRYPT.invokeExact(state.party, state.ciphertext);
+    }
+
+    @Benchmark
+    public Object keyGen(Leveled state) throws Throwable {
+        KEY_GEN.invokeExact(state.party);
+        return state.party;
+    }
+
+    @Benchmark
+    public Object addCiphers(Leveled state) throws Throwable {
+        return (Object) ADD_CIPHERS.invokeExact(state.party, state.c1, state.c2);
+    }
+
+    @Benchmark
+    public Object multCiphers(Leveled state) throws Throwable {
+        return (Object) MULT_CIPHERS.invokeExact(state.party, state.c1, state.c2);
+    }
+
+    @Benchmark
+    public Object refresh(Leveled state) throws Throwable {
+        return (Object) REFRESH.invokeExact(state.party, state.c1);
+    }
+}
@@ -0,0 +1,115 @@
+package crycom.benchmarks;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of key generation, encryption and decryption of the simple LWE encryption scheme.
+ * The scheme lives in the default package, which cannot be imported, so its public members are reached through
+ * method handles looked up once when the class is loaded. The handles are adapted to Object in place of the classes
+ * of the scheme and called with invokeExact, so no arguments are boxed and the JIT inlines them as constants.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SimpleSchemeBenchmark {
+    private static final MethodHandle NEW_PARTY;
+    private static final MethodHandle GENERATE_KEYS;
+    private static final MethodHandle ENCRYPT_BIT;
+    private static final MethodHandle ENCRYPT_BIT_INTO;
+    private static final MethodHandle SEND_CIPHERTEXT;
+    private static final MethodHandle RECEIVE_CIPHERTEXT;
+    private static final MethodHandle DECRYPT_TO_BIT;
+    private static final MethodHandle NEW_CIPHERTEXT;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            Class<?> party = Class.forName("Party");
+            Class<?> ciphertext = Class.forName("Ciphertext");
+            NEW_PARTY = lookup.findConstructor(party, MethodType.methodType(void.class, int.class, int.class, boolean.class))
+                    .asType(MethodType.methodType(Object.class, int.class, int.class, boolean.class));
+            GENERATE_KEYS = lookup.findVirtual(party, "generateKeys", MethodType.methodType(void.class))
+                    .asType(MethodType.methodType(void.class, Object.class));
+            ENCRYPT_BIT = lookup.findVirtual(party, "encryptBit", MethodType.methodType(void.class, int.class))
+                    .asType(MethodType.methodType(void.class, Object.class, int.class));
+            ENCRYPT_BIT_INTO = lookup.findVirtual(party, "encryptBit", MethodType.methodType(void.class, int.class, ciphertext))
+                    .asType(MethodType.methodType(void.class, Object.class, int.class, Object.class));
+            SEND_CIPHERTEXT = lookup.findVirtual(party, "sendCiphertext", MethodType.methodType(ciphertext))
+                    .asType(MethodType.methodType(Object.class, Object.class));
+            RECEIVE_CIPHERTEXT = lookup.findVirtual(party, "receiveCiphertext", MethodType.methodType(void.class, ciphertext))
+                    .asType(MethodType.methodType(void.class, Object.class, Object.class));
+            DECRYPT_TO_BIT = lookup.findVirtual(party, "decryptToBit", MethodType.methodType(int.class))
+                    .asType(MethodType.methodType(int.class, Object.class));
+            NEW_CIPHERTEXT = lookup.findConstructor(ciphertext, MethodType.methodType(void.class, int.class))
+                    .asType(MethodType.methodType(Object.class, int.class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    @Param({"64", "128", "256"})
+    public int n;
+
+    @Param({"12", "16", "20"})
+    public int qBitLength;
+
+    @Param({"false", "true"})
+    public boolean powerOfTwoModulus;
+
+    private Object party;
+    private Object ciphertext;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable {
+        party = (Object) NEW_PARTY.invokeExact(n, qBitLength, powerOfTwoModulus);
+        GENERATE_KEYS.invokeExact(party);
+        ciphertext = (Object) NEW_CIPHERTEXT.invokeExact(n);
+        ENCRYPT_BIT.invokeExact(party, 1);
+        RECEIVE_CIPHERTEXT.invokeExact(party, (Object) SEND_CIPHERTEXT.invokeExact(party));
+    }
+
+    /**
+     * Key generation - the secret key and the public key of 'SimplePublicKey.genPublicKey', which dominates.
+     */
+    @Benchmark
+    public Object generateKeys() throws Throwable {
+        GENERATE_KEYS.invokeExact(party);
+        return party;
+    }
+
+    @Benchmark
+    public Object encryptBit() throws Throwable {
+        ENCRYPT_BIT.invokeExact(party, 1);
+        return (Object) SEND_CIPHERTEXT.invokeExact(party);
+    }
+
+    @Benchmark
+    public Object encryptBitIntoCiphertext() throws Throwable {
+        ENCRYPT_BIT_INTO.invokeExact(party, 1, ciphertext);
+        return ciphertext;
+    }
+
+    @Benchmark
+    public int decryptToBit() throws Throwable {
+        return (int) DECRYPT_TO_BIT.invokeExact(party);
+    }
+}